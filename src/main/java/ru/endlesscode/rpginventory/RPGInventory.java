@@ -23,6 +23,7 @@ import net.milkbowl.vault.economy.Economy;
 import net.milkbowl.vault.permission.Permission;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventPriority;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.RegisteredServiceProvider;
 import org.bukkit.plugin.java.JavaPlugin;
@@ -38,12 +39,15 @@ import ru.endlesscode.rpginventory.inventory.slot.SlotManager;
 import ru.endlesscode.rpginventory.item.ItemManager;
 import ru.endlesscode.rpginventory.misc.Config;
 import ru.endlesscode.rpginventory.misc.FileLanguage;
+import ru.endlesscode.rpginventory.misc.SaveExecutor;
 import ru.endlesscode.rpginventory.misc.metrics.Metrics;
 import ru.endlesscode.rpginventory.misc.updater.ConfigUpdater;
 import ru.endlesscode.rpginventory.misc.updater.Updater;
 import ru.endlesscode.rpginventory.nms.VersionHandler;
 import ru.endlesscode.rpginventory.pet.PetManager;
 import ru.endlesscode.rpginventory.pet.mypet.MyPetManager;
+import ru.endlesscode.rpginventory.storage.CompactFormat;
+import ru.endlesscode.rpginventory.utils.PlayerGrid;
 import ru.endlesscode.rpginventory.utils.PlayerUtils;
 import ru.endlesscode.rpginventory.utils.StringUtils;
 
@@ -104,9 +108,12 @@ public class RPGInventory extends JavaPlugin {
     public void onEnable() {
         instance = this;
 
+        SaveExecutor.init();
         Config.loadConfig(this);
         this.updateConfig();
+        CompactFormat.init();
         language = new FileLanguage(this);
+        ClickDispatcher.init(this);
 
         if (!this.checkRequirements()) {
             this.getPluginLoader().disablePlugin(this);
@@ -136,15 +143,16 @@ public class RPGInventory extends JavaPlugin {
 
         // Registering other listeners
         PluginManager pm = this.getServer().getPluginManager();
-        pm.registerEvents(new ArmorEquipListener(), this);
+        ArmorEquipListener armorEquipListener = new ArmorEquipListener();
+        pm.registerEvents(armorEquipListener, this);
+        ClickDispatcher.register(EventPriority.NORMAL, armorEquipListener);
         pm.registerEvents(new HandSwitchListener(), this);
         pm.registerEvents(new PlayerListener(), this);
+        pm.registerEvents(new MoveListener(), this);
+        pm.registerEvents(new PlayerGridListener(), this);
+        PlayerGrid.start(this);
         pm.registerEvents(new WorldListener(), this);
 
-        if (SlotManager.getSlotManager().getElytraSlot() != null) {
-            pm.registerEvents(new ElytraListener(), this);
-        }
-
         ProtocolLibrary.getProtocolManager().addPacketListener(new PlayerLoader(this));
 
         this.loadPlayers();
@@ -217,6 +225,10 @@ public class RPGInventory extends JavaPlugin {
     @Override
     public void onDisable() {
         this.savePlayers();
+        BackpackManager.saveBackpacks();
+        SaveExecutor.shutdown();
+        InventoryManager.closeStorage();
+        BackpackManager.closeStorage();
     }
 
     private void startMetrics() {
@@ -233,9 +245,7 @@ public class RPGInventory extends JavaPlugin {
         }
 
         this.getLogger().info("Saving players inventories...");
-        for (Player player : this.getServer().getOnlinePlayers()) {
-            InventoryManager.unloadPlayerInventory(player);
-        }
+        InventoryManager.unloadPlayerInventories(this.getServer().getOnlinePlayers());
     }
 
     private void loadPlayers() {
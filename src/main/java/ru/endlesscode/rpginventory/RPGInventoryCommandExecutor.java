@@ -26,12 +26,16 @@ import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.PluginManager;
 import ru.endlesscode.rpginventory.api.InventoryAPI;
+import ru.endlesscode.rpginventory.event.listener.ClickBenchmark;
+import ru.endlesscode.rpginventory.event.listener.MoveBenchmark;
 import ru.endlesscode.rpginventory.inventory.InventoryManager;
+import ru.endlesscode.rpginventory.inventory.StorageBenchmark;
 import ru.endlesscode.rpginventory.inventory.backpack.BackpackManager;
 import ru.endlesscode.rpginventory.item.ItemManager;
 import ru.endlesscode.rpginventory.pet.PetManager;
 import ru.endlesscode.rpginventory.utils.PlayerUtils;
 import ru.endlesscode.rpginventory.utils.StringUtils;
+import ru.endlesscode.rpginventory.utils.TagBenchmark;
 
 import java.util.List;
 
@@ -135,6 +139,10 @@ class RPGInventoryCommandExecutor implements CommandExecutor {
             sender.sendMessage(StringUtils.coloredLine("&6rpginv pet [&eplayer&6] [&epetId&6] &7- gives pet to player"));
             sender.sendMessage(StringUtils.coloredLine("&6rpginv item [&eplayer&6] [&eitemId&6] &7- gives item to player"));
             sender.sendMessage(StringUtils.coloredLine("&6rpginv bp [&eplayer&6] [&ebackpackId&6] &7- gives backpack to player"));
+            sender.sendMessage(StringUtils.coloredLine("&6rpginv benchmark &7- compare compression of saved inventories"));
+            sender.sendMessage(StringUtils.coloredLine("&6rpginv benchmark tags &7- compare ways to read item tags"));
+            sender.sendMessage(StringUtils.coloredLine("&6rpginv benchmark clicks &7- replay last clicks with dispatcher"));
+            sender.sendMessage(StringUtils.coloredLine("&6rpginv benchmark moves &7- compare checks of your moves"));
         }
 
         sender.sendMessage(StringUtils.coloredLine("&3====================================================="));
@@ -278,6 +286,17 @@ class RPGInventoryCommandExecutor implements CommandExecutor {
                 } else if (subCommand.equals("reload")) {
                     RPGInventoryCommandExecutor.reloadPlugin(sender);
                     return true;
+                } else if (subCommand.equals("benchmark")) {
+                    if (args.length >= 2 && args[1].equals("tags")) {
+                        TagBenchmark.run(sender);
+                    } else if (args.length >= 2 && args[1].equals("clicks")) {
+                        ClickBenchmark.run(sender);
+                    } else if (args.length >= 2 && args[1].equals("moves")) {
+                        MoveBenchmark.run(sender);
+                    } else {
+                        StorageBenchmark.run(sender);
+                    }
+                    return true;
                 }
             }
 
@@ -32,6 +32,7 @@ import org.bukkit.event.inventory.InventoryDragEvent;
 import org.bukkit.event.inventory.InventoryType;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
 import ru.endlesscode.rpginventory.RPGInventory;
 import ru.endlesscode.rpginventory.api.InventoryAPI;
 import ru.endlesscode.rpginventory.inventory.ActionType;
@@ -41,6 +42,7 @@ import ru.endlesscode.rpginventory.inventory.slot.Slot;
 import ru.endlesscode.rpginventory.inventory.slot.SlotManager;
 import ru.endlesscode.rpginventory.utils.InventoryUtils;
 import ru.endlesscode.rpginventory.utils.ItemUtils;
+import ru.endlesscode.rpginventory.utils.PlayerGrid;
 import ru.endlesscode.rpginventory.utils.PlayerUtils;
 
 /**
@@ -48,7 +50,10 @@ import ru.endlesscode.rpginventory.utils.PlayerUtils;
  * It is part of the RpgInventory.
  * All rights reserved 2014 - 2016 © «EndlessCode Group»
  */
-public class ArmorEquipListener implements Listener {
+public class ArmorEquipListener implements Listener, ClickDispatcher.ClickHandler {
+    // Dispenser equips players that are not farther than 2.3 blocks in front of it and 1 block by height
+    private static final double DISPENSE_DISTANCE = 4.0;
+
     @EventHandler(priority = EventPriority.LOWEST)
     public void onQuickEquip(PlayerInteractEvent event) {
         final Player player = event.getPlayer();
@@ -89,19 +94,22 @@ public class ArmorEquipListener implements Listener {
         }
     }
 
-    @EventHandler
-    public void onNormalEquip(InventoryClickEvent event) {
-        Player player = (Player) event.getWhoClicked();
-        if (!InventoryManager.playerIsLoaded(player) || InventoryAPI.isRPGInventory(event.getInventory())) {
+    /**
+     * Registered in {@link ClickDispatcher} with priority NORMAL
+     */
+    @Override
+    public void onInventoryClick(@NotNull InventoryClickEvent event, @NotNull ClickContext context) {
+        Player player = context.getPlayer();
+        if (context.isRpgInventory()) {
             return;
         }
 
-        ActionType actionType = ActionType.getTypeOfAction(event.getAction());
+        ActionType actionType = context.getActionType();
         if (actionType == ActionType.SET && event.getSlotType() != InventoryType.SlotType.ARMOR) {
             return;
         }
 
-        if (InventoryManager.get(player).isFlying()) {
+        if (context.getPlayerWrapper().isFlying()) {
             PlayerUtils.sendMessage(player, RPGInventory.getLanguage().getCaption("error.fall"));
             event.setCancelled(true);
             return;
@@ -146,7 +154,7 @@ public class ArmorEquipListener implements Listener {
         ArmorType type = ArmorType.matchType(event.getItem());
         if (type != null) {
             Location loc = event.getBlock().getLocation();
-            for (Player player : loc.getWorld().getPlayers()) {
+            for (Player player : PlayerGrid.getNearbyPlayers(loc, DISPENSE_DISTANCE)) {
                 if (loc.getBlockY() - player.getLocation().getBlockY() >= -1 && loc.getBlockY() - player.getLocation().getBlockY() <= 1) {
                     if (player.getInventory().getHelmet() == null && type == ArmorType.HELMET
                             || player.getInventory().getChestplate() == null && type == ArmorType.CHESTPLATE
@@ -29,6 +29,7 @@ import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.player.PlayerPickupItemEvent;
 import org.bukkit.inventory.Inventory;
+import org.jetbrains.annotations.NotNull;
 import ru.endlesscode.rpginventory.RPGInventory;
 import ru.endlesscode.rpginventory.api.InventoryAPI;
 import ru.endlesscode.rpginventory.inventory.ActionType;
@@ -39,6 +40,7 @@ import ru.endlesscode.rpginventory.inventory.backpack.BackpackHolder;
 import ru.endlesscode.rpginventory.inventory.backpack.BackpackManager;
 import ru.endlesscode.rpginventory.inventory.backpack.BackpackUpdater;
 import ru.endlesscode.rpginventory.inventory.slot.SlotManager;
+import ru.endlesscode.rpginventory.utils.ItemClassifier;
 import ru.endlesscode.rpginventory.utils.ItemUtils;
 import ru.endlesscode.rpginventory.utils.PlayerUtils;
 
@@ -47,7 +49,7 @@ import ru.endlesscode.rpginventory.utils.PlayerUtils;
  * It is part of the RpgInventory.
  * All rights reserved 2014 - 2016 © «EndlessCode Group»
  */
-public class BackpackListener implements Listener {
+public class BackpackListener implements Listener, ClickDispatcher.ClickHandler {
     @SuppressWarnings("deprecation")
     @EventHandler(priority = EventPriority.LOWEST)
     public void onUseBackpack(PlayerInteractEvent event) {
@@ -65,19 +67,24 @@ public class BackpackListener implements Listener {
         event.getPlayer().updateInventory();
     }
 
-    @EventHandler(priority = EventPriority.LOWEST)
-    public void onBackpackClick(final InventoryClickEvent event) {
+    /**
+     * Registered in {@link ClickDispatcher} with priority LOWEST
+     */
+    @Override
+    public void onInventoryClick(@NotNull final InventoryClickEvent event, @NotNull ClickContext context) {
         final Inventory inventory = event.getInventory();
-        final Player player = (Player) event.getWhoClicked();
+        final Player player = context.getPlayer();
 
-        if (!InventoryManager.playerIsLoaded(player) || event.isCancelled()) {
+        if (event.isCancelled()) {
             return;
         }
 
+        ItemClassifier.Descriptor cursor = context.getCursor();
         if (inventory.getHolder() instanceof BackpackHolder) {
             // Click inside backpack
-            if (BackpackManager.isBackpack(event.getCurrentItem()) || BackpackManager.isBackpack(event.getCursor()) ||
-                    InventoryManager.isFilledSlot(event.getCurrentItem()) || InventoryManager.isFilledSlot(event.getCursor())) {
+            ItemClassifier.Descriptor currentItem = context.getCurrentItem();
+            if (currentItem.is(ItemClassifier.Kind.BACKPACK) || cursor.is(ItemClassifier.Kind.BACKPACK) ||
+                    currentItem.is(ItemClassifier.Kind.FILL) || cursor.is(ItemClassifier.Kind.FILL)) {
                 event.setCancelled(true);
                 return;
             }
@@ -87,11 +94,11 @@ public class BackpackListener implements Listener {
                 return;
             }
 
-            BackpackUpdater.update(inventory, InventoryManager.get(player).getBackpack());
+            BackpackUpdater.update(inventory, context.getPlayerWrapper().getBackpack());
         } else if ((event.getRawSlot() >= event.getView().getTopInventory().getSize()
-                || event.getSlot() == SlotManager.getSlotManager().getBackpackSlot().getSlotId() && InventoryAPI.isRPGInventory(event.getInventory()))
-                && !BackpackManager.playerCanTakeBackpack(player) && BackpackManager.isBackpack(event.getCursor())
-                && ActionType.getTypeOfAction(event.getAction()) == ActionType.SET) {
+                || event.getSlot() == SlotManager.getSlotManager().getBackpackSlot().getSlotId() && context.isRpgInventory())
+                && cursor.is(ItemClassifier.Kind.BACKPACK) && context.getActionType() == ActionType.SET
+                && !BackpackManager.playerCanTakeBackpack(player)) {
             // Prevent placing new backpack in bottom inventory if player can't take backpack
             PlayerUtils.sendMessage(player, RPGInventory.getLanguage().getCaption("backpack.limit", BackpackManager.getLimit()));
             event.setCancelled(true);
@@ -114,7 +121,7 @@ public class BackpackListener implements Listener {
             return;
         }
 
-        backpack.onUse();
+        backpack.onClose();
         playerWrapper.setBackpack(null);
     }
 
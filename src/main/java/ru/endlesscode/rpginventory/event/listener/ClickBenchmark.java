@@ -0,0 +1,118 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.event.listener;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import ru.endlesscode.rpginventory.api.InventoryAPI;
+import ru.endlesscode.rpginventory.inventory.ActionType;
+import ru.endlesscode.rpginventory.inventory.InventoryManager;
+import ru.endlesscode.rpginventory.utils.ItemUtils;
+import ru.endlesscode.rpginventory.utils.StringUtils;
+
+import java.util.List;
+
+/**
+ * Replays clicks recorded after the first run of benchmark and compares classification of click by {@link ClickDispatcher}
+ * with probes that every click listener did separately. Handlers aren't called, so inventories stay untouched.
+ * Runs in the main thread, because it uses real events and items.
+ */
+public class ClickBenchmark {
+    private static final int WARMUP_CLICKS = 100000;
+    private static final int CLICKS = 100000;
+
+    // Result of calls, so JIT can't throw them away
+    private static int sink = 0;
+
+    private ClickBenchmark() {
+    }
+
+    public static void run(@NotNull CommandSender sender) {
+        List<InventoryClickEvent> recorded = ClickDispatcher.takeRecordedClicks();
+        if (recorded.isEmpty()) {
+            ClickDispatcher.startRecording();
+            sender.sendMessage(StringUtils.coloredLine("&3Clicks are recorded now, click in inventory and run benchmark again"));
+            return;
+        }
+
+        InventoryClickEvent[] clicks = recorded.toArray(new InventoryClickEvent[recorded.size()]);
+        sender.sendMessage(StringUtils.coloredLine("&3Recorded clicks: &6" + clicks.length + "&3, replayed: &6" + CLICKS));
+        for (Method method : Method.values()) {
+            measure(method, clicks, WARMUP_CLICKS);
+            long time = measure(method, clicks, CLICKS);
+            sender.sendMessage(StringUtils.coloredLine(String.format("&6%s&3: &6%.1f &3ns per click", method, (double) time/CLICKS)));
+        }
+    }
+
+    private static long measure(@NotNull Method method, @NotNull InventoryClickEvent[] clicks, int count) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            sink += method.call(clicks[i%clicks.length]);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private enum Method {
+        SEPARATE_PROBES {
+            @Override
+            int call(@NotNull InventoryClickEvent event) {
+                Player player = (Player) event.getWhoClicked();
+                ItemStack cursor = event.getCursor();
+                ItemStack currentItem = event.getCurrentItem();
+                int result = 0;
+
+                // Every listener checked player and read the tags it needs
+                for (int i = 0; i < 6; i++) {
+                    result += InventoryManager.playerIsLoaded(player) ? 1 : 0;
+                }
+                result += InventoryAPI.isRPGInventory(event.getInventory()) ? 1 : 0;
+                result += InventoryAPI.isRPGInventory(event.getInventory()) ? 1 : 0;
+                result += ActionType.getTypeOfAction(event.getAction()).ordinal();
+                result += ActionType.getTypeOfAction(event.getAction()).ordinal();
+                result += hasTag(currentItem, ItemUtils.BACKPACK_TAG) + hasTag(cursor, ItemUtils.BACKPACK_TAG);
+                result += hasTag(currentItem, ItemUtils.LOCKED_TAG);
+                result += hasTag(currentItem, ItemUtils.ITEM_TAG) + hasTag(cursor, ItemUtils.ITEM_TAG);
+                return result;
+            }
+
+            private int hasTag(ItemStack item, String tag) {
+                return !ItemUtils.isEmpty(item) && ItemUtils.hasTag(item, tag) ? 1 : 0;
+            }
+        },
+
+        CLICK_CONTEXT {
+            @Override
+            int call(@NotNull InventoryClickEvent event) {
+                ClickContext context = ClickContext.create(event);
+                if (context == null) {
+                    return 0;
+                }
+
+                return context.getActionType().ordinal() + (context.isRpgInventory() ? 1 : 0)
+                        + context.getCursor().getKind().ordinal() + context.getCurrentItem().getKind().ordinal();
+            }
+        };
+
+        abstract int call(@NotNull InventoryClickEvent event);
+    }
+}
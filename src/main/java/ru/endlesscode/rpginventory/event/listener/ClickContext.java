@@ -0,0 +1,143 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.event.listener;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.endlesscode.rpginventory.api.InventoryAPI;
+import ru.endlesscode.rpginventory.inventory.ActionType;
+import ru.endlesscode.rpginventory.inventory.InventoryManager;
+import ru.endlesscode.rpginventory.inventory.PlayerWrapper;
+import ru.endlesscode.rpginventory.inventory.slot.Slot;
+import ru.endlesscode.rpginventory.inventory.slot.SlotManager;
+import ru.endlesscode.rpginventory.utils.InventoryUtils;
+import ru.endlesscode.rpginventory.utils.ItemClassifier;
+
+/**
+ * Everything that click handlers need to know about the click, computed once per event.
+ * Items can be changed by handlers, so their descriptors are updated when event has another item.
+ */
+public class ClickContext {
+    private final InventoryClickEvent event;
+    private final Player player;
+    private final PlayerWrapper playerWrapper;
+    private final boolean rpgInventory;
+    private final ActionType actionType;
+    private final InventoryType.SlotType slotType;
+    @Nullable
+    private final Slot slot;
+
+    private ItemStack cursor = null;
+    private ItemClassifier.Descriptor cursorDescriptor = null;
+    private ItemStack currentItem = null;
+    private ItemClassifier.Descriptor currentItemDescriptor = null;
+
+    private ClickContext(@NotNull InventoryClickEvent event, @NotNull Player player, @NotNull PlayerWrapper playerWrapper) {
+        this.event = event;
+        this.player = player;
+        this.playerWrapper = playerWrapper;
+        this.rpgInventory = InventoryAPI.isRPGInventory(event.getInventory());
+        this.actionType = ActionType.getTypeOfAction(event.getAction());
+
+        int rawSlot = event.getRawSlot();
+        InventoryType.SlotType slotType = InventoryUtils.getSlotType(event.getSlotType(), rawSlot);
+        if (slotType != InventoryType.SlotType.OUTSIDE && rawSlot > event.getView().getTopInventory().getSize() && event.getSlot() < 9) {
+            slotType = InventoryType.SlotType.QUICKBAR;
+        }
+
+        this.slotType = slotType;
+        this.slot = slotType == InventoryType.SlotType.OUTSIDE ? null : SlotManager.getSlotManager().getSlot(event.getSlot(), slotType);
+    }
+
+    /**
+     * Classifies the click
+     *
+     * @return Context of click or null if inventory of player isn't loaded
+     */
+    @Nullable
+    static ClickContext create(@NotNull InventoryClickEvent event) {
+        Player player = (Player) event.getWhoClicked();
+        PlayerWrapper playerWrapper = InventoryManager.get(player);
+        return playerWrapper == null ? null : new ClickContext(event, player, playerWrapper);
+    }
+
+    @NotNull
+    public Player getPlayer() {
+        return this.player;
+    }
+
+    @NotNull
+    public PlayerWrapper getPlayerWrapper() {
+        return this.playerWrapper;
+    }
+
+    /**
+     * Returns true if click was in RPG inventory
+     */
+    public boolean isRpgInventory() {
+        return this.rpgInventory;
+    }
+
+    @NotNull
+    public ActionType getActionType() {
+        return this.actionType;
+    }
+
+    /**
+     * Returns type of clicked slot, clicks on hotbar in the bottom inventory are QUICKBAR clicks
+     */
+    @NotNull
+    public InventoryType.SlotType getSlotType() {
+        return this.slotType;
+    }
+
+    /**
+     * Returns RPG slot that was clicked or null
+     */
+    @Nullable
+    public Slot getSlot() {
+        return this.slot;
+    }
+
+    @NotNull
+    public ItemClassifier.Descriptor getCursor() {
+        ItemStack cursor = this.event.getCursor();
+        if (this.cursorDescriptor == null || cursor != this.cursor) {
+            this.cursor = cursor;
+            this.cursorDescriptor = ItemClassifier.classify(cursor);
+        }
+
+        return this.cursorDescriptor;
+    }
+
+    @NotNull
+    public ItemClassifier.Descriptor getCurrentItem() {
+        ItemStack currentItem = this.event.getCurrentItem();
+        if (this.currentItemDescriptor == null || currentItem != this.currentItem) {
+            this.currentItem = currentItem;
+            this.currentItemDescriptor = ItemClassifier.classify(currentItem);
+        }
+
+        return this.currentItemDescriptor;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.event.listener;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.logging.Level;
+
+/**
+ * The only listener of {@link InventoryClickEvent}. Click is classified once into {@link ClickContext}
+ * and passed to handlers ordered by priority and then by order of registration.
+ * Dispatcher is registered in Bukkit at every priority that has handlers, so handlers keep
+ * their place among listeners of other plugins. Clicks of players that aren't loaded are skipped.
+ */
+public class ClickDispatcher implements Listener {
+    private static final int RECORDED_CLICKS = 256;
+
+    private static ClickDispatcher dispatcher = null;
+
+    private final Plugin plugin;
+    private final Map<EventPriority, List<ClickHandler>> handlers = new EnumMap<>(EventPriority.class);
+    private final Deque<InventoryClickEvent> recordedClicks = new ArrayDeque<>(RECORDED_CLICKS);
+
+    private EventPriority lastPriority = EventPriority.LOWEST;
+    private InventoryClickEvent lastEvent = null;
+    private ClickContext lastContext = null;
+    private boolean recording = false;
+
+    private ClickDispatcher(@NotNull Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Drops handlers of previous enabling. Should be called before any handler is registered.
+     */
+    public static void init(@NotNull Plugin plugin) {
+        dispatcher = new ClickDispatcher(plugin);
+    }
+
+    public static void register(@NotNull final EventPriority priority, @NotNull ClickHandler handler) {
+        final ClickDispatcher dispatcher = ClickDispatcher.dispatcher;
+        List<ClickHandler> handlers = dispatcher.handlers.get(priority);
+        if (handlers == null) {
+            handlers = new ArrayList<>();
+            dispatcher.handlers.put(priority, handlers);
+            dispatcher.plugin.getServer().getPluginManager().registerEvent(InventoryClickEvent.class, dispatcher, priority,
+                    new EventExecutor() {
+                        @Override
+                        public void execute(Listener listener, Event event) {
+                            if (event instanceof InventoryClickEvent) {
+                                dispatcher.dispatch(priority, (InventoryClickEvent) event);
+                            }
+                        }
+                    }, dispatcher.plugin);
+        }
+
+        if (priority.ordinal() > dispatcher.lastPriority.ordinal()) {
+            dispatcher.lastPriority = priority;
+        }
+
+        handlers.add(handler);
+    }
+
+    /**
+     * Records next clicks for {@link ClickBenchmark}. Events are kept only until benchmark takes them.
+     */
+    static void startRecording() {
+        if (dispatcher != null) {
+            dispatcher.recordedClicks.clear();
+            dispatcher.recording = true;
+        }
+    }
+
+    /**
+     * Returns recorded clicks and stops recording
+     */
+    @NotNull
+    static List<InventoryClickEvent> takeRecordedClicks() {
+        if (dispatcher == null) {
+            return Collections.emptyList();
+        }
+
+        List<InventoryClickEvent> clicks = new ArrayList<>(dispatcher.recordedClicks);
+        dispatcher.recordedClicks.clear();
+        dispatcher.recording = false;
+        return clicks;
+    }
+
+    private void dispatch(@NotNull EventPriority priority, @NotNull InventoryClickEvent event) {
+        ClickContext context = this.getContext(event);
+        if (context != null) {
+            for (ClickHandler handler : this.handlers.get(priority)) {
+                try {
+                    handler.onInventoryClick(event, context);
+                } catch (Throwable e) {
+                    this.plugin.getLogger().log(Level.SEVERE, "Could not pass InventoryClickEvent to "
+                            + handler.getClass().getSimpleName(), e);
+                }
+            }
+        }
+
+        // Event isn't needed after the last dispatch, so it isn't kept until the next click
+        if (priority == this.lastPriority) {
+            this.lastEvent = null;
+            this.lastContext = null;
+        }
+    }
+
+    private ClickContext getContext(@NotNull InventoryClickEvent event) {
+        if (event != this.lastEvent) {
+            this.lastEvent = event;
+            this.lastContext = ClickContext.create(event);
+
+            if (this.recording) {
+                this.recordedClicks.addLast(event);
+                this.recording = this.recordedClicks.size() < RECORDED_CLICKS;
+            }
+        }
+
+        return this.lastContext;
+    }
+
+    public interface ClickHandler {
+        void onInventoryClick(@NotNull InventoryClickEvent event, @NotNull ClickContext context);
+    }
+}
@@ -30,6 +30,7 @@ import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryType;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
 import ru.endlesscode.rpginventory.inventory.InventoryManager;
 import ru.endlesscode.rpginventory.inventory.craft.CraftExtension;
 import ru.endlesscode.rpginventory.inventory.craft.CraftManager;
@@ -43,11 +44,12 @@ import java.util.List;
  * It is part of the RpgInventory.
  * All rights reserved 2014 - 2016 © «EndlessCode Group»
  */
-public class CraftListener extends PacketAdapter implements Listener {
+public class CraftListener extends PacketAdapter implements Listener, ClickDispatcher.ClickHandler {
     public CraftListener(Plugin plugin) {
         super(plugin, WrapperPlayServerWindowItems.TYPE);
 
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        ClickDispatcher.register(EventPriority.HIGH, this);
     }
 
     @Override
@@ -74,13 +76,14 @@ public class CraftListener extends PacketAdapter implements Listener {
         }
     }
 
-    @EventHandler(priority = EventPriority.HIGH)
-    public void onInventoryClick(InventoryClickEvent event) {
-        final Player player = (Player) event.getWhoClicked();
-        //noinspection ConstantConditions
-        if (event.isCancelled() || !InventoryManager.playerIsLoaded(player)
-                || event.getInventory().getType() != InventoryType.WORKBENCH
-                || !InventoryManager.get(player).isPocketCraft() && !Config.getConfig().getBoolean("craft.workbench", true)) {
+    /**
+     * Registered in {@link ClickDispatcher} with priority HIGH
+     */
+    @Override
+    public void onInventoryClick(@NotNull InventoryClickEvent event, @NotNull ClickContext context) {
+        final Player player = context.getPlayer();
+        if (event.isCancelled() || event.getInventory().getType() != InventoryType.WORKBENCH
+                || !context.getPlayerWrapper().isPocketCraft() && !Config.getConfig().getBoolean("craft.workbench", true)) {
             return;
         }
 
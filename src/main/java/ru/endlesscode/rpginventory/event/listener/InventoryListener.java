@@ -33,6 +33,7 @@ import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.PlayerInventory;
 import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
 import ru.endlesscode.rpginventory.RPGInventory;
 import ru.endlesscode.rpginventory.api.InventoryAPI;
 import ru.endlesscode.rpginventory.event.PlayerInventoryLoadEvent;
@@ -49,6 +50,7 @@ import ru.endlesscode.rpginventory.misc.Config;
 import ru.endlesscode.rpginventory.pet.PetManager;
 import ru.endlesscode.rpginventory.pet.mypet.MyPetManager;
 import ru.endlesscode.rpginventory.utils.InventoryUtils;
+import ru.endlesscode.rpginventory.utils.ItemClassifier;
 import ru.endlesscode.rpginventory.utils.ItemUtils;
 import ru.endlesscode.rpginventory.utils.PlayerUtils;
 
@@ -57,7 +59,14 @@ import ru.endlesscode.rpginventory.utils.PlayerUtils;
  * It is part of the RpgInventory.
  * All rights reserved 2014 - 2016 © «EndlessCode Group»
  */
-public class InventoryListener implements Listener {
+public class InventoryListener implements Listener, ClickDispatcher.ClickHandler {
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            InventoryManager.prefetchPlayerInventory(event.getUniqueId());
+        }
+    }
+
     @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerJoin(final PlayerJoinEvent event) {
         final Player player = event.getPlayer();
@@ -166,7 +175,7 @@ public class InventoryListener implements Listener {
                 event.getItem().remove();
 
                 player.playSound(player.getLocation(), Sound.ENTITY_ITEM_PICKUP, .3f, 1.7f);
-                if (Config.getConfig().getBoolean("attack.auto-held")) {
+                if (Config.getSettings().isAutoHeld()) {
                     player.getInventory().setHeldItemSlot(quickSlot.getQuickSlot());
                 }
 
@@ -208,32 +217,35 @@ public class InventoryListener implements Listener {
                 }
             }
         }
+
+        if (InventoryAPI.isRPGInventory(event.getInventory())) {
+            InventoryManager.get(player).markModified();
+        }
     }
 
+    /**
+     * Registered in {@link ClickDispatcher} with priority HIGHEST
+     */
     @SuppressWarnings("deprecation")
-    @EventHandler(priority = EventPriority.HIGHEST)
-    public void onInventoryClick(final InventoryClickEvent event) {
-        final Player player = (Player) event.getWhoClicked();
+    @Override
+    public void onInventoryClick(@NotNull final InventoryClickEvent event, @NotNull ClickContext context) {
+        final Player player = context.getPlayer();
 
-        if (!InventoryManager.playerIsLoaded(player) || event.isCancelled()) {
+        if (event.isCancelled()) {
             return;
         }
 
         final int rawSlot = event.getRawSlot();
-        InventoryType.SlotType slotType = InventoryUtils.getSlotType(event.getSlotType(), rawSlot);
+        InventoryType.SlotType slotType = context.getSlotType();
 
         if (slotType == InventoryType.SlotType.OUTSIDE) {
             return;
         }
 
-        if (rawSlot > event.getView().getTopInventory().getSize() && event.getSlot() < 9) {
-            slotType = InventoryType.SlotType.QUICKBAR;
-        }
-
-        final Slot slot = SlotManager.getSlotManager().getSlot(event.getSlot(), slotType);
+        final Slot slot = context.getSlot();
         final Inventory inventory = event.getInventory();
         InventoryAction action = event.getAction();
-        ActionType actionType = ActionType.getTypeOfAction(action);
+        ActionType actionType = context.getActionType();
         ItemStack currentItem = event.getCurrentItem();
         ItemStack cursor = event.getCursor();
 
@@ -244,13 +256,13 @@ public class InventoryListener implements Listener {
 
         // Crafting area
         if (inventory.getType() == InventoryType.CRAFTING) {
-            if (InventoryManager.get(player).isOpened()) {
+            if (context.getPlayerWrapper().isOpened()) {
                 return;
             }
 
             switch (event.getSlotType()) {
                 case CRAFTING:
-                    InventoryManager.get(player).openInventory(true);
+                    context.getPlayerWrapper().openInventory(true);
                 case ARMOR:
                 case RESULT:
                     event.setCancelled(true);
@@ -259,7 +271,7 @@ public class InventoryListener implements Listener {
         }
 
         // In RPG Inventory or quick slot
-        if (InventoryAPI.isRPGInventory(inventory)
+        if (context.isRpgInventory()
                 || slotType == InventoryType.SlotType.QUICKBAR && slot != null
                 && (slot.isQuick() || slot.getSlotType() == Slot.SlotType.SHIELD) && player.getGameMode() != GameMode.CREATIVE) {
             if (rawSlot < 54 && slot == null || action == InventoryAction.MOVE_TO_OTHER_INVENTORY) {
@@ -271,8 +283,11 @@ public class InventoryListener implements Listener {
                 return;
             }
 
+            // Any click on RPG slot may change saved items
+            context.getPlayerWrapper().markModified();
+
             PlayerWrapper playerWrapper = null;
-            if (InventoryAPI.isRPGInventory(inventory)) {
+            if (context.isRpgInventory()) {
                 playerWrapper = (PlayerWrapper) inventory.getHolder();
 
                 // Check flying
@@ -316,7 +331,7 @@ public class InventoryListener implements Listener {
                 if (event.getClick() == ClickType.RIGHT && BackpackManager.open(player, currentItem)) {
                     event.setCancelled(true);
                 } else if (actionType != ActionType.GET) {
-                    event.setCancelled(!BackpackManager.isBackpack(cursor));
+                    event.setCancelled(!context.getCursor().is(ItemClassifier.Kind.BACKPACK));
                 }
             }
 
@@ -37,7 +37,7 @@ import org.bukkit.event.player.*;
 import org.bukkit.inventory.InventoryView;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.util.Vector;
+import org.jetbrains.annotations.NotNull;
 import ru.endlesscode.rpginventory.RPGInventory;
 import ru.endlesscode.rpginventory.inventory.InventoryManager;
 import ru.endlesscode.rpginventory.inventory.slot.Slot;
@@ -48,6 +48,7 @@ import ru.endlesscode.rpginventory.item.ItemStat;
 import ru.endlesscode.rpginventory.item.Modifier;
 import ru.endlesscode.rpginventory.misc.Config;
 import ru.endlesscode.rpginventory.utils.EffectUtils;
+import ru.endlesscode.rpginventory.utils.ItemClassifier;
 import ru.endlesscode.rpginventory.utils.ItemUtils;
 import ru.endlesscode.rpginventory.utils.PlayerUtils;
 
@@ -58,7 +59,7 @@ import java.util.List;
  * It is part of the RpgInventory.
  * All rights reserved 2014 - 2016 © «EndlessCode Group»
  */
-public class ItemListener implements Listener {
+public class ItemListener implements Listener, ClickDispatcher.ClickHandler {
     @EventHandler(priority = EventPriority.LOW)
     public void onDamage(EntityDamageByEntityEvent event) {
         Player damager;
@@ -103,8 +104,8 @@ public class ItemListener implements Listener {
         }
 
         // Checking battle system restrictions
-        boolean forceWeapon = Config.getConfig().getBoolean("attack.force-weapon");
-        boolean requireWeapon = Config.getConfig().getBoolean("attack.require-weapon");
+        boolean forceWeapon = Config.getSettings().isForceWeapon();
+        boolean requireWeapon = Config.getSettings().isRequireWeapon();
         if ((forceWeapon || requireWeapon)
                 && SlotManager.getSlotManager().getSlot(damager.getInventory().getHeldItemSlot(), InventoryType.SlotType.QUICKBAR) == null) {
             List<Slot> activeSlots = SlotManager.getSlotManager().getActiveSlots();
@@ -138,33 +139,6 @@ public class ItemListener implements Listener {
         event.setDamage(EntityDamageEvent.DamageModifier.BASE, damage);
     }
 
-    @EventHandler(priority = EventPriority.MONITOR)
-    public void onPlayerJump(PlayerMoveEvent event) {
-        Player player = event.getPlayer();
-
-        if (!InventoryManager.playerIsLoaded(player)) {
-            return;
-        }
-
-        Vector velocity = player.getVelocity();
-        Modifier jumpModifier = ItemManager.getModifier(player, ItemStat.StatType.JUMP);
-
-        if (jumpModifier.getBonus() == 0 && jumpModifier.getMultiplier() == 1) {
-            return;
-        }
-
-        // === START: Magic constants ===
-        if (velocity.getY() == 0.41999998688697815D) {
-            double jump = (1.5 + Math.sqrt(jumpModifier.getBonus()))*jumpModifier.getMultiplier();
-            Vector moveDirection = event.getTo().toVector().subtract(event.getFrom().toVector());
-            velocity.setX(moveDirection.getX()*jump*player.getWalkSpeed());
-            velocity.setY(velocity.getY()*jump/1.5);
-            velocity.setZ(moveDirection.getZ()*jump*player.getWalkSpeed());
-            player.setVelocity(velocity);
-        }
-        // === END: Magic constants ===
-    }
-
     @EventHandler
     public void onPlayerFall(EntityDamageEvent event) {
         if (event.getEntity().getType() == EntityType.PLAYER && event.getCause() == EntityDamageEvent.DamageCause.FALL) {
@@ -226,16 +200,13 @@ public class ItemListener implements Listener {
         ItemManager.updateStats(event.getPlayer());
     }
 
-    @EventHandler(priority = EventPriority.MONITOR)
-    public void afterEquipChange(InventoryClickEvent event) {
-        Player player = (Player) event.getWhoClicked();
-
-        if (!InventoryManager.playerIsLoaded(player)) {
-            return;
-        }
-
-        if (CustomItem.isCustomItem(event.getCursor()) || CustomItem.isCustomItem(event.getCurrentItem())) {
-            ItemManager.updateStats(player);
+    /**
+     * Registered in {@link ClickDispatcher} with priority MONITOR
+     */
+    @Override
+    public void onInventoryClick(@NotNull InventoryClickEvent event, @NotNull ClickContext context) {
+        if (context.getCursor().is(ItemClassifier.Kind.CUSTOM_ITEM) || context.getCurrentItem().is(ItemClassifier.Kind.CUSTOM_ITEM)) {
+            ItemManager.updateStats(context.getPlayer());
         }
     }
 
@@ -309,6 +280,12 @@ public class ItemListener implements Listener {
         }
     }
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void afterLevelChange(PlayerLevelChangeEvent event) {
+        // Items in hands can become allowed or disallowed
+        ItemManager.updateStats(event.getPlayer());
+    }
+
     @EventHandler(priority = EventPriority.MONITOR)
     public void afterBreakItem(PlayerItemBreakEvent event) {
         Player player = event.getPlayer();
@@ -28,9 +28,11 @@ import org.bukkit.event.entity.PlayerDeathEvent;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.player.PlayerGameModeChangeEvent;
 import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
 import ru.endlesscode.rpginventory.RPGInventory;
 import ru.endlesscode.rpginventory.inventory.InventoryLocker;
 import ru.endlesscode.rpginventory.inventory.InventoryManager;
+import ru.endlesscode.rpginventory.utils.ItemClassifier;
 import ru.endlesscode.rpginventory.utils.ItemUtils;
 import ru.endlesscode.rpginventory.utils.PlayerUtils;
 
@@ -41,7 +43,7 @@ import java.util.List;
  * It is part of the RpgInventory.
  * All rights reserved 2014 - 2016 © «EndlessCode Group»
  */
-public class LockerListener implements Listener {
+public class LockerListener implements Listener, ClickDispatcher.ClickHandler {
     @EventHandler
     public void onGameModeSwitch(PlayerGameModeChangeEvent event) {
         Player player = event.getPlayer();
@@ -57,16 +59,15 @@ public class LockerListener implements Listener {
         }
     }
 
-    @EventHandler
-    public void onInventoryClick(InventoryClickEvent event) {
-        Player player = (Player) event.getWhoClicked();
+    /**
+     * Registered in {@link ClickDispatcher} with priority NORMAL
+     */
+    @Override
+    public void onInventoryClick(@NotNull InventoryClickEvent event, @NotNull ClickContext context) {
+        Player player = context.getPlayer();
         ItemStack currentItem = event.getCurrentItem();
 
-        if (!InventoryManager.playerIsLoaded(player)) {
-            return;
-        }
-
-        if (!ItemUtils.isEmpty(currentItem) && InventoryLocker.isLockedSlot(currentItem)) {
+        if (context.getCurrentItem().is(ItemClassifier.Kind.LOCKED)) {
             int slot = event.getSlot();
             int line = InventoryLocker.getLine(slot);
             if (InventoryLocker.isBuyableSlot(currentItem, line)) {
@@ -78,7 +79,7 @@ public class LockerListener implements Listener {
                         player.getInventory().setItem(slot + 1, InventoryLocker.getBuyableSlotForLine(InventoryLocker.getLine(slot + 1)));
                     }
 
-                    InventoryManager.get(player).setBuyedSlots(InventoryManager.get(player).getBuyedGenericSlots() + 1);
+                    context.getPlayerWrapper().setBuyedSlots(context.getPlayerWrapper().getBuyedGenericSlots() + 1);
                 } else {
                     event.setCancelled(true);
                 }
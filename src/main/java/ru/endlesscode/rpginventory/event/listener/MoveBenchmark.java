@@ -0,0 +1,137 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.event.listener;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.BlockFace;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.jetbrains.annotations.NotNull;
+import ru.endlesscode.rpginventory.inventory.InventoryManager;
+import ru.endlesscode.rpginventory.inventory.PlayerWrapper;
+import ru.endlesscode.rpginventory.inventory.slot.SlotManager;
+import ru.endlesscode.rpginventory.item.ItemManager;
+import ru.endlesscode.rpginventory.item.ItemStat;
+import ru.endlesscode.rpginventory.item.Modifier;
+import ru.endlesscode.rpginventory.utils.PlayerGrid;
+import ru.endlesscode.rpginventory.utils.StringUtils;
+
+/**
+ * Compares checks that four move listeners did separately with checks of {@link MoveListener}.
+ * Moves of player who runs benchmark are simulated: half of them are rotations of head
+ * and half are steps. Nothing is changed, only checks are measured.
+ */
+public class MoveBenchmark {
+    private static final int WARMUP_MOVES = 100000;
+    private static final int MOVES = 100000;
+
+    // Result of calls, so JIT can't throw them away
+    private static int sink = 0;
+
+    private MoveBenchmark() {
+    }
+
+    public static void run(@NotNull CommandSender sender) {
+        if (!(sender instanceof Player) || !InventoryManager.playerIsLoaded((Player) sender)) {
+            sender.sendMessage(StringUtils.coloredLine("&cBenchmark of moves can be run only by loaded player"));
+            return;
+        }
+
+        Player player = (Player) sender;
+        Location from = player.getLocation();
+        Location rotated = from.clone();
+        rotated.setYaw(from.getYaw() + 10);
+        Location stepped = from.clone().add(0.2, 0, 0);
+        PlayerMoveEvent[] moves = {
+                new PlayerMoveEvent(player, from, rotated),
+                new PlayerMoveEvent(player, from, stepped)
+        };
+
+        boolean elytraEnabled = SlotManager.getSlotManager().getElytraSlot() != null;
+        sender.sendMessage(StringUtils.coloredLine("&3Simulated moves: &6" + MOVES + "&3, jump items: &6"
+                + InventoryManager.get(player).getStats().hasModifier(player, ItemStat.StatType.JUMP)
+                + "&3, elytra slot: &6" + elytraEnabled));
+        for (Method method : Method.values()) {
+            measure(method, moves, elytraEnabled, WARMUP_MOVES);
+            long time = measure(method, moves, elytraEnabled, MOVES);
+            sender.sendMessage(StringUtils.coloredLine(String.format("&6%s&3: &6%.1f &3ns per move", method, (double) time/MOVES)));
+        }
+    }
+
+    private static long measure(@NotNull Method method, @NotNull PlayerMoveEvent[] moves, boolean elytraEnabled, int count) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            sink += method.call(moves[i%moves.length], elytraEnabled);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private enum Method {
+        SEPARATE_LISTENERS {
+            @Override
+            int call(@NotNull PlayerMoveEvent event, boolean elytraEnabled) {
+                Player player = event.getPlayer();
+                int result = 0;
+
+                // Not loaded player
+                result += InventoryManager.playerIsLoaded(player) ? 1 : 0;
+
+                // Jump
+                if (InventoryManager.playerIsLoaded(player)) {
+                    result += player.getVelocity().getY() > 0 ? 1 : 0;
+                    Modifier jumpModifier = ItemManager.getModifier(player, ItemStat.StatType.JUMP);
+                    result += jumpModifier.getBonus() == 0 && jumpModifier.getMultiplier() == 1 ? 1 : 0;
+                }
+
+                // Pet
+                if (!event.isCancelled() && InventoryManager.playerIsLoaded(player)) {
+                    result += InventoryManager.get(player).hasPet() ? 1 : 0;
+                }
+
+                // Elytra
+                if (elytraEnabled && InventoryManager.playerIsLoaded(player) && !player.isFlying()) {
+                    PlayerWrapper playerWrapper = InventoryManager.get(player);
+                    Material below = player.getLocation().getBlock().getRelative(BlockFace.DOWN).getType();
+                    result += below == Material.AIR && playerWrapper.isFalling() ? 1 : 0;
+                }
+
+                return result;
+            }
+        },
+
+        MOVE_LISTENER {
+            @Override
+            int call(@NotNull PlayerMoveEvent event, boolean elytraEnabled) {
+                Player player = event.getPlayer();
+                if (!InventoryManager.playerIsLoaded(player)) {
+                    return 0;
+                }
+
+                int result = PlayerGrid.isSectionChanged(event.getFrom(), event.getTo()) ? 1 : 0;
+                PlayerWrapper playerWrapper = InventoryManager.get(player);
+                return playerWrapper == null ? result : result + MoveListener.getWork(player, playerWrapper, event, elytraEnabled);
+            }
+        };
+
+        abstract int call(@NotNull PlayerMoveEvent event, boolean elytraEnabled);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.event.listener;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.util.Vector;
+import org.jetbrains.annotations.NotNull;
+import ru.endlesscode.rpginventory.RPGInventory;
+import ru.endlesscode.rpginventory.inventory.InventoryManager;
+import ru.endlesscode.rpginventory.inventory.PlayerWrapper;
+import ru.endlesscode.rpginventory.inventory.slot.SlotManager;
+import ru.endlesscode.rpginventory.item.ItemManager;
+import ru.endlesscode.rpginventory.item.ItemStat;
+import ru.endlesscode.rpginventory.item.Modifier;
+import ru.endlesscode.rpginventory.utils.PlayerGrid;
+
+/**
+ * Handles all moves of players.
+ * <p>
+ * Most of moves are rotations of head or steps of players without jump items and elytra,
+ * so every move is checked with cheap flags of player before any real work.
+ */
+public class MoveListener implements Listener {
+    static final int JUMP = 1;
+    static final int ELYTRA = 1 << 1;
+
+    private final boolean elytraEnabled;
+
+    public MoveListener() {
+        this.elytraEnabled = SlotManager.getSlotManager().getElytraSlot() != null;
+    }
+
+    /**
+     * Returns work that should be done on the move
+     *
+     * @return Flags {@link #JUMP} and {@link #ELYTRA}, 0 if there are nothing to do
+     */
+    static int getWork(@NotNull Player player, @NotNull PlayerWrapper playerWrapper,
+                       @NotNull PlayerMoveEvent event, boolean elytraEnabled) {
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        if (from.getX() == to.getX() && from.getY() == to.getY() && from.getZ() == to.getZ()) {
+            return 0;
+        }
+
+        int work = 0;
+        if (elytraEnabled && (playerWrapper.isFalling() || playerWrapper.hasElytra())) {
+            work |= ELYTRA;
+        }
+
+        if (playerWrapper.getStats().hasModifier(player, ItemStat.StatType.JUMP)) {
+            work |= JUMP;
+        }
+
+        return work;
+    }
+
+    @EventHandler(priority = EventPriority.LOW)
+    public void onPlayerMoveWhenNotLoaded(PlayerMoveEvent event) {
+        Player player = event.getPlayer();
+
+        if (event.isCancelled() || InventoryManager.playerIsLoaded(player)) {
+            return;
+        }
+
+        if (PlayerLoader.isPreparedPlayer(player) && !InventoryManager.isLoading(player)) {
+            PlayerLoader.removePlayer(player);
+            player.kickPlayer(RPGInventory.getLanguage().getCaption("error.rp.denied"));
+            event.setCancelled(true);
+        } else {
+            Location toLocation = event.getTo();
+            Location newLocation = event.getFrom().clone();
+            //noinspection deprecation
+            if (!player.isOnGround()) {
+                newLocation.setY(toLocation.getY());
+            }
+
+            newLocation.setPitch(toLocation.getPitch());
+            newLocation.setYaw(toLocation.getYaw());
+            event.setTo(newLocation);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        Player player = event.getPlayer();
+        if (!event.isCancelled() && PlayerGrid.isSectionChanged(event.getFrom(), event.getTo())) {
+            PlayerGrid.update(player, event.getTo());
+        }
+
+        PlayerWrapper playerWrapper = InventoryManager.get(player);
+        if (playerWrapper == null) {
+            return;
+        }
+
+        int work = getWork(player, playerWrapper, event, this.elytraEnabled);
+        if (work == 0) {
+            return;
+        }
+
+        if ((work & ELYTRA) != 0) {
+            this.onPlayerFall(player, playerWrapper, event);
+        }
+
+        if ((work & JUMP) != 0) {
+            this.onPlayerJump(player, event);
+        }
+    }
+
+    private void onPlayerFall(Player player, PlayerWrapper playerWrapper, PlayerMoveEvent event) {
+        if (player.isFlying()) {
+            return;
+        }
+
+        if (player.getLocation().getBlock().getRelative(BlockFace.DOWN).getType() == Material.AIR) {
+            if (!playerWrapper.isFalling() && event.getFrom().getY() > event.getTo().getY()) {
+                playerWrapper.setFalling(true);
+            } else if (playerWrapper.isFalling()) {
+                playerWrapper.onFall();
+            }
+        } else if (playerWrapper.isFalling()) {
+            playerWrapper.setFalling(false);
+        }
+    }
+
+    private void onPlayerJump(Player player, PlayerMoveEvent event) {
+        Vector velocity = player.getVelocity();
+
+        // === START: Magic constants ===
+        if (velocity.getY() == 0.41999998688697815D) {
+            Modifier jumpModifier = ItemManager.getModifier(player, ItemStat.StatType.JUMP);
+            double jump = (1.5 + Math.sqrt(jumpModifier.getBonus()))*jumpModifier.getMultiplier();
+            Vector moveDirection = event.getTo().toVector().subtract(event.getFrom().toVector());
+            velocity.setX(moveDirection.getX()*jump*player.getWalkSpeed());
+            velocity.setY(velocity.getY()*jump/1.5);
+            velocity.setZ(moveDirection.getZ()*jump*player.getWalkSpeed());
+            player.setVelocity(velocity);
+        }
+        // === END: Magic constants ===
+    }
+}
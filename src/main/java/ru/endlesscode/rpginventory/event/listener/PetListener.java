@@ -28,7 +28,6 @@ import org.bukkit.event.entity.*;
 import org.bukkit.event.inventory.InventoryOpenEvent;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
-import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerRespawnEvent;
 import org.bukkit.event.vehicle.VehicleEnterEvent;
 import org.bukkit.inventory.HorseInventory;
@@ -45,7 +44,6 @@ import ru.endlesscode.rpginventory.misc.Config;
 import ru.endlesscode.rpginventory.pet.PetFood;
 import ru.endlesscode.rpginventory.pet.PetManager;
 import ru.endlesscode.rpginventory.pet.PetType;
-import ru.endlesscode.rpginventory.utils.EntityUtils;
 import ru.endlesscode.rpginventory.utils.ItemUtils;
 import ru.endlesscode.rpginventory.utils.PlayerUtils;
 
@@ -77,6 +75,7 @@ public class PetListener implements Listener {
             if (petSlot != null && petSlot.isCup(inventory.getItem(PetManager.getPetSlotId()))
                     && ItemManager.allowedForPlayer(player, petItem, false)) {
                 inventory.setItem(PetManager.getPetSlotId(), event.getItem());
+                InventoryManager.get(player).markModified();
                 PetManager.spawnPet(player, petItem);
                 player.getEquipment().setItemInMainHand(null);
             }
@@ -141,67 +140,46 @@ public class PetListener implements Listener {
 
     @EventHandler
     public void onPetDeath(EntityDeathEvent event) {
-        if (!(event.getEntity() instanceof Tameable)) {
-            return;
-        }
-
-        Tameable petEntity = (Tameable) event.getEntity();
-        final OfflinePlayer player;
-        if (!petEntity.isTamed() || (player = (OfflinePlayer) petEntity.getOwner()) == null || !player.isOnline()) {
-            return;
-        }
-
-        if (!InventoryManager.playerIsLoaded(player)) {
+        final Player player = PetManager.getPetOwner(event.getEntity());
+        if (player == null || !player.isOnline()) {
+            PetManager.forgetPet(event.getEntity());
             return;
         }
 
         PlayerWrapper playerWrapper = InventoryManager.get(player);
-        if (petEntity == playerWrapper.getPet()) {
-            Inventory inventory = playerWrapper.getInventory();
-            final ItemStack petItem = inventory.getItem(PetManager.getPetSlotId());
-            PetType petType = PetManager.getPetFromItem(petItem);
-
-            if (petType != null && petType.isRevival()) {
-                PetManager.setCooldown(petItem, petType.getCooldown());
-                PetManager.saveHealth(petItem, 0);
-                inventory.setItem(PetManager.getPetSlotId(), petItem);
-                PetManager.startCooldownTimer(player.getPlayer(), petItem);
-            } else {
-                inventory.setItem(PetManager.getPetSlotId(), null);
-            }
-
-            event.getDrops().clear();
-            playerWrapper.setPet(null);
+        Inventory inventory = playerWrapper.getInventory();
+        final ItemStack petItem = inventory.getItem(PetManager.getPetSlotId());
+        PetType petType = PetManager.getPetFromItem(petItem);
+
+        if (petType != null && petType.isRevival()) {
+            PetManager.setCooldown(petItem, petType.getCooldown());
+            PetManager.saveHealth(petItem, 0);
+            inventory.setItem(PetManager.getPetSlotId(), petItem);
+            PetManager.startCooldownTimer(player, petItem);
+        } else {
+            inventory.setItem(PetManager.getPetSlotId(), null);
         }
+
+        playerWrapper.markModified();
+        event.getDrops().clear();
+        PetManager.forgetPet(event.getEntity());
     }
 
     @EventHandler
     public void onTarget(EntityTargetLivingEntityEvent event) {
-        if (!(event.getEntity() instanceof Tameable) || !(event.getEntity() instanceof LivingEntity)
-                || event.getTarget() == null || !InventoryManager.isAllowedWorld(event.getTarget().getWorld())) {
+        if (event.getTarget() == null) {
             return;
         }
 
-        LivingEntity petEntity = (LivingEntity) event.getEntity();
-        final OfflinePlayer player = (OfflinePlayer) ((Tameable) petEntity).getOwner();
-
-        if (!InventoryManager.playerIsLoaded(player)) {
+        PetType petType = PetManager.getPetFromEntity(event.getEntity());
+        if (petType == null || !InventoryManager.isAllowedWorld(event.getTarget().getWorld())) {
             return;
         }
 
-        PlayerWrapper playerWrapper = InventoryManager.get(player);
-        if (playerWrapper.hasPet() && petEntity == playerWrapper.getPet()) {
-            PetType petType = PetManager.getPetFromEntity((Tameable) petEntity);
-
-            if (petType == null) {
-                return;
-            }
-
-            if (event.getTarget() != null && event.getTarget().getType() == EntityType.PLAYER) {
-                event.setCancelled(!petType.isAttackPlayers());
-            } else {
-                event.setCancelled(!petType.isAttackMobs());
-            }
+        if (event.getTarget().getType() == EntityType.PLAYER) {
+            event.setCancelled(!petType.isAttackPlayers());
+        } else {
+            event.setCancelled(!petType.isAttackMobs());
         }
     }
 
@@ -227,13 +205,13 @@ public class PetListener implements Listener {
 
         LivingEntity petEntity;
         if (event.getDamager() instanceof LivingEntity && (petEntity = (LivingEntity) event.getDamager()) instanceof Tameable) {
-            PetType petType = PetManager.getPetFromEntity((Tameable) petEntity);
+            PetType petType = PetManager.getPetFromEntity(petEntity);
 
             if (petType != null) {
                 event.setDamage(petType.getDamage());
             }
         } else if (event.getEntity() instanceof LivingEntity && (petEntity = (LivingEntity) event.getEntity()) instanceof Tameable
-                && !Config.getConfig().getBoolean("attack.own-pet") && player != null) {
+                && !Config.getSettings().isAttackOwnPet() && player != null) {
             Tameable ownedEntity = (Tameable) petEntity;
             if (ownedEntity.isTamed() && ownedEntity.getOwner().getUniqueId().equals(event.getDamager().getUniqueId())) {
                 event.setCancelled(true);
@@ -262,26 +240,17 @@ public class PetListener implements Listener {
             return;
         }
 
-        Horse vehicle = (Horse) event.getVehicle();
-        if (PetManager.getPetFromEntity(vehicle) != null && player != vehicle.getOwner()) {
-            PlayerUtils.sendMessage(player, RPGInventory.getLanguage().getCaption("error.mount.owner", vehicle.getOwner().getName()));
+        Player owner = PetManager.getPetOwner(event.getVehicle());
+        if (owner != null && player != owner) {
+            PlayerUtils.sendMessage(player, RPGInventory.getLanguage().getCaption("error.mount.owner", owner.getName()));
             event.setCancelled(true);
         }
     }
 
     @EventHandler(priority = EventPriority.LOWEST)
     public void onWorldChanged(EntityPortalEnterEvent event) {
-        if (!(event.getEntity() instanceof Tameable) || !(event.getEntity() instanceof LivingEntity)) {
-            return;
-        }
-
-        OfflinePlayer player = (OfflinePlayer) ((Tameable) event.getEntity()).getOwner();
-        if (!InventoryManager.playerIsLoaded(player)) {
-            return;
-        }
-
-        PlayerWrapper playerWrapper = InventoryManager.get(player);
-        if (event.getEntity() == playerWrapper.getPet()) {
+        Player player = PetManager.getPetOwner(event.getEntity());
+        if (player != null) {
             PetManager.respawnPet(player);
         }
     }
@@ -307,21 +276,4 @@ public class PetListener implements Listener {
             }.runTaskLater(RPGInventory.getInstance(), 1);
         }
     }
-
-    @EventHandler(priority = EventPriority.MONITOR)
-    public void onPlayerMove(PlayerMoveEvent event) {
-        Player player = event.getPlayer();
-        if (event.isCancelled() || !InventoryManager.playerIsLoaded(player)) {
-            return;
-        }
-
-        PlayerWrapper playerWrapper = InventoryManager.get(player);
-        if (playerWrapper.hasPet() && playerWrapper.getPet().getPassenger() != player) {
-            LivingEntity petEntity = playerWrapper.getPet();
-            PetType pet = PetManager.getPetFromEntity((Tameable) petEntity);
-            if (pet != null && pet.getRole() != PetType.Role.COMPANION) {
-                EntityUtils.goPetToPlayer(player, petEntity);
-            }
-        }
-    }
 }
@@ -18,7 +18,6 @@
 
 package ru.endlesscode.rpginventory.event.listener;
 
-import org.bukkit.Location;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -29,7 +28,6 @@ import org.bukkit.event.entity.EntityTargetLivingEntityEvent;
 import org.bukkit.event.entity.PlayerDeathEvent;
 import org.bukkit.event.player.PlayerCommandPreprocessEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
-import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerRespawnEvent;
 import ru.endlesscode.rpginventory.RPGInventory;
 import ru.endlesscode.rpginventory.inventory.InventoryManager;
@@ -46,7 +44,10 @@ public class PlayerListener implements Listener {
     public void onCommand(PlayerCommandPreprocessEvent event) {
         Player player = event.getPlayer();
         if (InventoryManager.isAllowedWorld(player.getWorld()) && !InventoryManager.playerIsLoaded(player)) {
-            PlayerUtils.sendMessage(player, RPGInventory.getLanguage().getCaption("error.rp.denied"));
+            if (!InventoryManager.isLoading(player)) {
+                PlayerUtils.sendMessage(player, RPGInventory.getLanguage().getCaption("error.rp.denied"));
+            }
+
             event.setCancelled(true);
         }
     }
@@ -80,38 +81,15 @@ public class PlayerListener implements Listener {
         }
     }
 
-    @EventHandler(priority = EventPriority.LOW)
-    public void onPlayerMoveWhenNotLoaded(PlayerMoveEvent event) {
-        Player player = event.getPlayer();
-
-        if (event.isCancelled() || InventoryManager.playerIsLoaded(player)) {
-            return;
-        }
-
-        if (PlayerLoader.isPreparedPlayer(player)) {
-            PlayerLoader.removePlayer(player);
-            player.kickPlayer(RPGInventory.getLanguage().getCaption("error.rp.denied"));
-            event.setCancelled(true);
-        } else {
-            Location toLocation = event.getTo();
-            Location newLocation = event.getFrom().clone();
-            //noinspection deprecation
-            if (!player.isOnGround()) {
-                newLocation.setY(toLocation.getY());
-            }
-
-            newLocation.setPitch(toLocation.getPitch());
-            newLocation.setYaw(toLocation.getYaw());
-            event.setTo(newLocation);
-        }
-    }
-
     @EventHandler(priority = EventPriority.LOW)
     public void onPlayerInteractWhenNotLoaded(PlayerInteractEvent event) {
         Player player = event.getPlayer();
 
         if (InventoryManager.isAllowedWorld(player.getWorld()) && !InventoryManager.playerIsLoaded(player)) {
-            PlayerUtils.sendMessage(player, RPGInventory.getLanguage().getCaption("error.rp.denied"));
+            if (!InventoryManager.isLoading(player)) {
+                PlayerUtils.sendMessage(player, RPGInventory.getLanguage().getCaption("error.rp.denied"));
+            }
+
             event.setCancelled(true);
         }
     }
@@ -19,7 +19,6 @@
 package ru.endlesscode.rpginventory.event.listener;
 
 import org.bukkit.Bukkit;
-import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.world.WorldSaveEvent;
@@ -36,8 +35,6 @@ public class WorldListener implements Listener {
     public void onWorldSave(WorldSaveEvent event) {
         BackpackManager.saveBackpacks();
 
-        for (Player player : Bukkit.getServer().getOnlinePlayers()) {
-            InventoryManager.savePlayerInventory(player);
-        }
+        InventoryManager.savePlayerInventories(Bukkit.getServer().getOnlinePlayers());
     }
 }
@@ -0,0 +1,80 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.event.updater;
+
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
+import ru.endlesscode.rpginventory.RPGInventory;
+
+import java.util.Arrays;
+
+/**
+ * One task that runs health updaters of all players.
+ * <p>
+ * Updater runs only after it was woken up: player was loaded or equipment was changed.
+ * All wake ups of one tick are merged into one update on the next tick. The task is
+ * scheduled only when there is something to update, so idle players cost nothing.
+ */
+class HealthScheduler extends BukkitRunnable {
+    private static HealthUpdater[] active = new HealthUpdater[16];
+    private static int activeSize = 0;
+
+    private HealthScheduler() {
+    }
+
+    static void wake(@NotNull HealthUpdater updater) {
+        if (updater.activeIndex >= 0) {
+            return;
+        }
+
+        if (activeSize == 0) {
+            new HealthScheduler().runTask(RPGInventory.getInstance());
+        }
+
+        if (activeSize == active.length) {
+            active = Arrays.copyOf(active, activeSize*2);
+        }
+
+        updater.activeIndex = activeSize;
+        active[activeSize++] = updater;
+    }
+
+    static void remove(@NotNull HealthUpdater updater) {
+        if (updater.activeIndex < 0) {
+            return;
+        }
+
+        HealthUpdater last = active[--activeSize];
+        active[updater.activeIndex] = last;
+        last.activeIndex = updater.activeIndex;
+        active[activeSize] = null;
+        updater.activeIndex = -1;
+    }
+
+    @Override
+    public void run() {
+        HealthUpdater[] updaters = Arrays.copyOf(active, activeSize);
+        for (HealthUpdater updater : updaters) {
+            remove(updater);
+            if (updater.isPlayerOnline()) {
+                updater.update();
+            }
+        }
+    }
+}
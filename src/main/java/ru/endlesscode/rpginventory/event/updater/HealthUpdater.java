@@ -18,174 +18,153 @@
 
 package ru.endlesscode.rpginventory.event.updater;
 
+import org.bukkit.attribute.Attribute;
+import org.bukkit.attribute.AttributeInstance;
+import org.bukkit.attribute.AttributeModifier;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.Nullable;
 import ru.endlesscode.rpginventory.inventory.InventoryManager;
+import ru.endlesscode.rpginventory.inventory.PlayerWrapper;
 import ru.endlesscode.rpginventory.item.ItemManager;
 import ru.endlesscode.rpginventory.item.ItemStat;
 import ru.endlesscode.rpginventory.item.Modifier;
 import ru.endlesscode.rpginventory.misc.Config;
+import ru.endlesscode.rpginventory.misc.Settings;
+import ru.endlesscode.rpginventory.pet.Attributes;
 
 /**
  * Created by OsipXD on 14.05.2016
  * It is part of the RpgInventory.
  * All rights reserved 2014 - 2016 © «EndlessCode Group»
  */
-public class HealthUpdater extends BukkitRunnable {
-    private final static double BASE_HEALTH = Config.getConfig().getDouble("health.base", 20.0D);
+public class HealthUpdater {
+    private final static double VANILLA_HEALTH = 20.0D;
 
     private final Player player;
-    private State state;
 
-    private boolean initHealth = true;
+    @Nullable
+    private Modifier currentModifier = null;
+    private double modifiedHealth = Config.getSettings().getBaseHealth();
+    private double health = -1;
+    private boolean legacy = false;
+    private double legacyAttributesBonus = 0;
 
-    private Modifier currentModifier = Modifier.EMPTY;
-    private double otherPluginsBonus = 0;
-    private double attributesBonus = 0;
-    private boolean accepted = true;
-
-    // Temporary variables
-    private double tOtherPluginsBonus = 0;
-    private double tAttributesBonus = 0;
-    private double newBonus = 0;
-    private double newMaxHealth = 0;
-    private double newHealth = 0;
+    // Position in HealthScheduler, -1 if updater is not woken up
+    int activeIndex = -1;
 
     public HealthUpdater(Player player) {
         this.player = player;
-        this.state = State.WAITING;
     }
 
+    /**
+     * Returns max health given by RPGInventory
+     */
     public double getModifiedHealth() {
-        return (BASE_HEALTH + this.currentModifier.getBonus())*this.currentModifier.getMultiplier();
+        return this.modifiedHealth;
     }
 
-    @Override
-    public void run() {
-        if (!player.isOnline()) {
-            cancel();
-            return;
-        }
+    /**
+     * Returns max health given by other plugins and vanilla attributes
+     */
+    public double getOtherBonus() {
+        return this.player.getMaxHealth() - this.modifiedHealth;
+    }
 
-        if (this.initHealth && this.newHealth == 0) {
-            this.initHealth = false;
+    public void start() {
+        // Previous versions changed base max health, now bonus is applied with modifier
+        if (this.legacy) {
+            this.removeLegacyBonus();
+            this.legacy = false;
         }
 
-        this.waiting();
-        switch (this.state) {
-            case CHECKING:
-                this.checking();
-                break;
-            case APPLYING:
-                this.applying();
-                break;
-            case ACCEPTING:
-                this.accepting();
-                break;
-        }
+        this.wake();
     }
 
-    private void setMaxHealth(double newMaxHealth) {
-        // Validate max health
-        if (newMaxHealth <= 0) {
+    /**
+     * Updates health on next tick, should be called when equipment was changed
+     */
+    public void wake() {
+        HealthScheduler.wake(this);
+    }
+
+    boolean isPlayerOnline() {
+        return this.player.isOnline();
+    }
+
+    /**
+     * Applies health bonus of items as modifier of max health attribute
+     */
+    void update() {
+        Modifier modifier = ItemManager.getModifier(this.player, ItemStat.StatType.HEALTH);
+        AttributeInstance healthAttribute = this.player.getAttribute(Attribute.GENERIC_MAX_HEALTH);
+        AttributeModifier rpgInvModifier = findModifier(healthAttribute);
+        if (rpgInvModifier != null && modifier.equals(this.currentModifier)) {
             return;
         }
 
-        double currentMaxHealth = this.player.getMaxHealth();
+        double oldMaxHealth = this.player.getMaxHealth();
         double currentHealth = this.player.getHealth();
+        if (rpgInvModifier != null) {
+            healthAttribute.removeModifier(rpgInvModifier);
+        }
 
-        if (this.initHealth) {
-            this.initHealth = false;
-        } else {
-            // Compensating of health changes
+        this.currentModifier = modifier;
+        this.modifiedHealth = calculateHealth(modifier);
+        healthAttribute.addModifier(new AttributeModifier(
+                Attributes.HEALTH_MODIFIER_ID, Attributes.HEALTH_MODIFIER,
+                this.modifiedHealth - VANILLA_HEALTH, AttributeModifier.Operation.ADD_NUMBER
+        ));
+
+        // Compensating of health changes
+        double newMaxHealth = this.player.getMaxHealth();
+        if (!this.player.isDead()) {
             double newHealth;
-            if (newMaxHealth > currentMaxHealth) {
-                newHealth = currentHealth + newMaxHealth - currentMaxHealth;
-            } else if (newMaxHealth < currentMaxHealth) {
-                newHealth = currentHealth - currentMaxHealth + newMaxHealth;
-                if (newHealth < 1) {
-                    newHealth = 1;
-                }
+            if (this.health >= 0) {
+                // Health was cut when bonus was removed, restore it if player wasn't damaged since then
+                newHealth = currentHealth >= oldMaxHealth ? this.health : currentHealth;
+            } else if (newMaxHealth < oldMaxHealth) {
+                newHealth = Math.max(1, currentHealth - oldMaxHealth + newMaxHealth);
             } else {
-                newHealth = currentHealth;
+                newHealth = currentHealth + newMaxHealth - oldMaxHealth;
             }
 
-            this.newHealth = newHealth;
+            this.player.setHealth(Math.min(newHealth, newMaxHealth));
         }
-        this.newMaxHealth = newMaxHealth;
-
-        this.player.setMaxHealth(this.getModifiedHealth());
-        this.accepted = false;
-        this.state = State.CHECKING;
-    }
-
-    private void waiting() {
-        double currentMaxHealth = player.getMaxHealth();
-        double currentBonus =
-                this.initHealth
-                        ? this.attributesBonus + this.otherPluginsBonus
-                        : currentMaxHealth - this.getModifiedHealth();
-        Modifier newModifier = ItemManager.getModifier(player, ItemStat.StatType.HEALTH);
-
-        // Check if we need update health
-        if (!this.currentModifier.equals(newModifier) || this.initHealth
-                || currentBonus != this.otherPluginsBonus + this.attributesBonus) {
-            if (!this.accepted) {
-                return;
-            }
-
-            this.newBonus = currentBonus;
-            this.currentModifier = newModifier;
-            this.setMaxHealth(this.getModifiedHealth() + this.newBonus);
-        }
-    }
-
-    private void checking() {
-        this.tAttributesBonus = this.player.getMaxHealth() - this.getModifiedHealth();
-        this.tOtherPluginsBonus = this.newBonus - this.tAttributesBonus;
 
+        this.health = -1;
+        this.scaleHealth();
 
-        // Next state
-        this.state = State.APPLYING;
+        // Update info slots
+        PlayerWrapper playerWrapper = InventoryManager.get(this.player);
+        if (playerWrapper != null) {
+            InventoryManager.syncInfoSlots(playerWrapper);
+        }
     }
 
-    private void applying() {
-        this.player.setMaxHealth(this.getModifiedHealth() + this.tOtherPluginsBonus);
-
-
-        this.state = State.ACCEPTING;
+    /**
+     * Previous version set base max health to {@code health.base - attributes bonus} on unload.
+     * Base value is returned to vanilla, changes made by other plugins since then are kept.
+     */
+    private void removeLegacyBonus() {
+        AttributeInstance healthAttribute = this.player.getAttribute(Attribute.GENERIC_MAX_HEALTH);
+        double baseValue = healthAttribute.getBaseValue() + this.legacyAttributesBonus
+                - (Config.getSettings().getBaseHealth() - VANILLA_HEALTH);
+        healthAttribute.setBaseValue(baseValue > 0 ? baseValue : VANILLA_HEALTH);
     }
 
-    private void accepting() {
-        player.setHealth(newHealth > player.getMaxHealth() ? player.getMaxHealth() : newHealth);
-
-        this.otherPluginsBonus = this.tOtherPluginsBonus;
-        this.attributesBonus = this.tAttributesBonus - (newMaxHealth - player.getMaxHealth());
-
-        this.scaleHealth();
-
-        // Reset variables
-        this.tOtherPluginsBonus = 0;
-        this.tAttributesBonus = 0;
-        this.newBonus = 0;
-        this.newMaxHealth = 0;
-        this.newHealth = 0;
-
-        this.accepted = true;
-        this.state = State.WAITING;
-
-        // Update info slots
-        InventoryManager.syncInfoSlots(InventoryManager.get(player));
+    private static double calculateHealth(Modifier modifier) {
+        return (Config.getSettings().getBaseHealth() + modifier.getBonus())*modifier.getMultiplier();
     }
 
     private void scaleHealth() {
-        if (!Config.getConfig().getBoolean("health.scale", false)) {
+        Settings settings = Config.getSettings();
+        if (!settings.isScaleHealth()) {
             return;
         }
 
-        int hearts = Config.getConfig().getInt("health.hearts", 20);
-        double minInHeart = Config.getConfig().getDouble("health.heart-value.min", 1);
-        double maxInHeart = Config.getConfig().getDouble("health.heart-value.max", 5);
+        int hearts = settings.getHearts();
+        double minInHeart = settings.getMinInHeart();
+        double maxInHeart = settings.getMaxInHeart();
 
         double healthScale;
         if (this.player.getMaxHealth()/minInHeart < hearts) {
@@ -201,36 +180,72 @@ public class HealthUpdater extends BukkitRunnable {
         }
     }
 
+    /**
+     * Returns health that should be restored after loading or -1
+     */
     public double getHealth() {
-        return newHealth;
+        return this.health;
     }
 
-    public void setHealth(double newHealth) {
-        this.newHealth = newHealth;
+    public void setHealth(double health) {
+        this.health = health;
     }
 
-    public double getAttributesBonus() {
-        return attributesBonus;
+    /**
+     * Marks that health was saved by previous version and base max health should be restored
+     *
+     * @param attributesBonus Value of {@code health.attributes} saved by previous version
+     */
+    public void setLegacyBonus(double attributesBonus) {
+        this.legacy = true;
+        this.legacyAttributesBonus = attributesBonus;
     }
 
-    public void setAttributesBonus(double attributesBonus) {
-        this.attributesBonus = attributesBonus;
-    }
-
-    public double getOtherPluginsBonus() {
-        return otherPluginsBonus;
-    }
+    /**
+     * Resets base max health changed by other plugins or previous versions
+     *
+     * @return false if base max health is not changed
+     */
+    public boolean resetMaxHealth() {
+        if (this.player.getAttribute(Attribute.GENERIC_MAX_HEALTH).getBaseValue() == VANILLA_HEALTH) {
+            return false;
+        }
 
-    public void setOtherPluginsBonus(double otherPluginsBonus) {
-        this.otherPluginsBonus = otherPluginsBonus;
+        //noinspection deprecation
+        this.player.resetMaxHealth();
+        return true;
     }
 
+    /**
+     * Removes health bonus. Health that is cut because of it will be restored after loading.
+     */
     public void stop() {
-        player.setMaxHealth(BASE_HEALTH - this.attributesBonus);
-        this.cancel();
+        HealthScheduler.remove(this);
+        AttributeInstance healthAttribute = this.player.getAttribute(Attribute.GENERIC_MAX_HEALTH);
+        AttributeModifier rpgInvModifier = findModifier(healthAttribute);
+        if (rpgInvModifier == null) {
+            return;
+        }
+
+        double currentHealth = this.player.getHealth();
+        healthAttribute.removeModifier(rpgInvModifier);
+        this.currentModifier = null;
+
+        double maxHealth = this.player.getMaxHealth();
+        if (currentHealth > maxHealth) {
+            this.health = currentHealth;
+            this.player.setHealth(maxHealth);
+        }
     }
 
-    private enum State {
-        WAITING, APPLYING, CHECKING, ACCEPTING
+    @Nullable
+    private static AttributeModifier findModifier(AttributeInstance healthAttribute) {
+        for (AttributeModifier modifier : healthAttribute.getModifiers()) {
+            if (modifier.getUniqueId().compareTo(Attributes.HEALTH_MODIFIER_ID) == 0) {
+                return modifier;
+            }
+        }
+
+        return null;
     }
 }
@@ -48,6 +48,8 @@ public class StatsUpdater extends BukkitRunnable {
         }
 
         PlayerWrapper playerWrapper = InventoryManager.get(this.player);
+        playerWrapper.getStats().invalidate();
+        playerWrapper.getHealthUpdater().wake();
         playerWrapper.updatePermissions();
 
         // Update speed
@@ -21,15 +21,18 @@ package ru.endlesscode.rpginventory.inventory;
 import org.bukkit.GameMode;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventPriority;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import ru.endlesscode.rpginventory.RPGInventory;
+import ru.endlesscode.rpginventory.event.listener.ClickDispatcher;
 import ru.endlesscode.rpginventory.event.listener.LockerListener;
 import ru.endlesscode.rpginventory.misc.Config;
 import ru.endlesscode.rpginventory.misc.FileLanguage;
+import ru.endlesscode.rpginventory.utils.ItemClassifier;
 import ru.endlesscode.rpginventory.utils.ItemUtils;
 import ru.endlesscode.rpginventory.utils.PlayerUtils;
 import ru.endlesscode.rpginventory.utils.StringUtils;
@@ -71,14 +74,15 @@ public class InventoryLocker {
             meta.setLore(Collections.singletonList(RPGInventory.getLanguage().getCaption("buyable.lore")));
 
             InventoryLocker.buyableSlot.setItemMeta(meta);
-            buyableSlot = addId(buyableSlot);
         } catch (Exception e) {
 
             e.printStackTrace();
             return false;
         }
 
-        instance.getServer().getPluginManager().registerEvents(new LockerListener(), instance);
+        LockerListener lockerListener = new LockerListener();
+        instance.getServer().getPluginManager().registerEvents(lockerListener, instance);
+        ClickDispatcher.register(EventPriority.NORMAL, lockerListener);
         return true;
     }
 
@@ -120,20 +124,21 @@ public class InventoryLocker {
         im.setLore(lore);
         slot.setItemMeta(im);
 
-        return addId(slot);
+        return ItemUtils.setTag(slot, ItemUtils.LOCKED_TAG, String.valueOf(line));
     }
 
     @NotNull
     private static ItemStack addId(@NotNull ItemStack item) {
-        return ItemUtils.setTag(item, "locked", "0");
+        return ItemUtils.setTag(item, ItemUtils.LOCKED_TAG, "0");
     }
 
     public static boolean isLockedSlot(@Nullable ItemStack item) {
-        return isEnabled() && !ItemUtils.isEmpty(item) && ItemUtils.hasTag(item, "locked");
+        return isEnabled() && ItemClassifier.classify(item).is(ItemClassifier.Kind.LOCKED);
     }
 
     public static boolean isBuyableSlot(ItemStack currentItem, int line) {
-        return getBuyableSlotForLine(line).equals(currentItem);
+        ItemClassifier.Descriptor descriptor = ItemClassifier.classify(currentItem);
+        return descriptor.is(ItemClassifier.Kind.LOCKED) && String.valueOf(line).equals(descriptor.getId());
     }
 
     public static void lockSlots(@NotNull Player player) {
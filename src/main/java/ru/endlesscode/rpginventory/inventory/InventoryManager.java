@@ -23,6 +23,7 @@ import org.bukkit.OfflinePlayer;
 import org.bukkit.World;
 import org.bukkit.entity.AnimalTamer;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.inventory.InventoryAction;
 import org.bukkit.event.inventory.InventoryType;
 import org.bukkit.inventory.Inventory;
@@ -40,28 +41,40 @@ import ru.endlesscode.rpginventory.event.PetEquipEvent;
 import ru.endlesscode.rpginventory.event.PetUnequipEvent;
 import ru.endlesscode.rpginventory.event.PlayerInventoryLoadEvent;
 import ru.endlesscode.rpginventory.event.PlayerInventoryUnloadEvent;
+import ru.endlesscode.rpginventory.event.listener.ClickDispatcher;
 import ru.endlesscode.rpginventory.event.listener.InventoryListener;
 import ru.endlesscode.rpginventory.inventory.slot.Slot;
 import ru.endlesscode.rpginventory.inventory.slot.SlotManager;
 import ru.endlesscode.rpginventory.item.ItemManager;
 import ru.endlesscode.rpginventory.misc.Config;
+import ru.endlesscode.rpginventory.misc.SaveExecutor;
 import ru.endlesscode.rpginventory.pet.PetManager;
 import ru.endlesscode.rpginventory.pet.PetType;
+import ru.endlesscode.rpginventory.storage.Storage;
+import ru.endlesscode.rpginventory.storage.StorageType;
 import ru.endlesscode.rpginventory.utils.*;
 
-import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 @SuppressWarnings("ResultOfMethodCallIgnored")
 public class InventoryManager {
     static final String TITLE = RPGInventory.getLanguage().getCaption("title");
     private static final Map<UUID, PlayerWrapper> INVENTORIES = new HashMap<>();
+    private static final Map<UUID, Object> LOADING = new HashMap<>();
+    private static final Map<UUID, Future<?>> SAVING = new ConcurrentHashMap<>();
+    private static final Map<UUID, Prefetch> PREFETCHED = new ConcurrentHashMap<>();
+    private static final long PREFETCH_TIMEOUT = TimeUnit.MINUTES.toMillis(2);
+    private static final long MAINTENANCE_DELAY = 20*60;
+    private static final long MAINTENANCE_PERIOD = 20*60*60;
 
     private static ItemStack fillSlot = null;
+    private static Storage storage = null;
 
     private InventoryManager() {
     }
@@ -72,16 +85,69 @@ public class InventoryManager {
             ItemMeta meta = fillSlot.getItemMeta();
             meta.setDisplayName(" ");
             fillSlot.setItemMeta(meta);
+            fillSlot = ItemUtils.setTag(fillSlot, ItemUtils.FILL_TAG, "1");
         } catch (Exception e) {
             e.printStackTrace();
             return false;
         }
 
+        try {
+            storage = StorageType.open("inventories", ".inv");
+        } catch (IOException e) {
+            RPGInventory.getPluginLogger().warning("Failed to open inventory storage: " + e.getMessage());
+            return false;
+        }
+
+        InventoryManager.startMaintenance();
+
         // Register events
-        instance.getServer().getPluginManager().registerEvents(new InventoryListener(), instance);
+        InventoryListener inventoryListener = new InventoryListener();
+        instance.getServer().getPluginManager().registerEvents(inventoryListener, instance);
+        ClickDispatcher.register(EventPriority.HIGHEST, inventoryListener);
         return true;
     }
 
+    @NotNull
+    static Storage getStorage() {
+        return storage;
+    }
+
+    public static void closeStorage() {
+        if (storage == null) {
+            return;
+        }
+
+        try {
+            storage.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        storage = null;
+    }
+
+    /**
+     * Submits maintenance of storage to the save thread, so it never runs together with writes
+     */
+    private static void startMaintenance() {
+        final Storage storage = InventoryManager.storage;
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                SaveExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            storage.maintain();
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                });
+            }
+        }.runTaskTimer(RPGInventory.getInstance(), MAINTENANCE_DELAY, MAINTENANCE_PERIOD);
+    }
+
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     public static boolean validateUpdate(Player player, ActionType actionType, @NotNull Slot slot, ItemStack item) {
         return actionType == ActionType.GET || actionType == ActionType.DROP
@@ -409,20 +475,16 @@ public class InventoryManager {
 
     @Nullable
     public static Slot getQuickSlot(int slot) {
-        for (Slot quickSlot : SlotManager.getSlotManager().getQuickSlots()) {
-            if (slot == quickSlot.getQuickSlot()) {
-                return quickSlot;
-            }
-        }
-
-        return null;
+        return SlotManager.getSlotManager().getQuickSlot(slot);
     }
 
     static void lockQuickSlots(@NotNull Player player) {
         for (Slot quickSlot : SlotManager.getSlotManager().getQuickSlots()) {
             int slotId = quickSlot.getQuickSlot();
 
-            if (ItemUtils.isEmpty(player.getInventory().getItem(slotId))) {
+            // Also replace untagged holders left from older versions
+            ItemStack item = player.getInventory().getItem(slotId);
+            if (ItemUtils.isEmpty(item) || quickSlot.isCup(item) && !ItemClassifier.classify(item).is(ItemClassifier.Kind.HOLDER)) {
                 player.getInventory().setItem(slotId, quickSlot.getCup());
             }
 
@@ -452,46 +514,134 @@ public class InventoryManager {
         }.runTaskLater(RPGInventory.getInstance(), 20);
     }
 
-    private static boolean isNewPlayer(Player player) {
-        return !new File(RPGInventory.getInstance().getDataFolder(), "inventories/" + player.getUniqueId() + ".inv").exists();
+    /**
+     * Returns null if it is unknown yet, because inventory of player wasn't prefetched
+     */
+    @Nullable
+    private static Boolean isNewPlayer(Player player) {
+        if (SAVING.containsKey(player.getUniqueId())) {
+            return false;
+        }
+
+        Prefetch prefetch = PREFETCHED.get(player.getUniqueId());
+        if (prefetch != null && prefetch.isLoaded()) {
+            return prefetch.getSnapshot() == null;
+        }
+
+        return null;
     }
 
-    public static void loadPlayerInventory(@NotNull Player player) {
+    public static void loadPlayerInventory(@NotNull final Player player) {
         if (!InventoryManager.isAllowedWorld(player.getWorld())) {
             INVENTORIES.remove(player.getUniqueId());
+            LOADING.remove(player.getUniqueId());
             return;
         }
 
-        try {
-            File folder = new File(RPGInventory.getInstance().getDataFolder(), "inventories");
-            if (!folder.exists()) {
-                folder.mkdir();
-            }
+        // Ticket allows to find out that loading was superseded or cancelled
+        final Object ticket = new Object();
+        LOADING.put(player.getUniqueId(), ticket);
+
+        Prefetch prefetch = PREFETCHED.remove(player.getUniqueId());
+        if (prefetch != null && prefetch.isLoaded() && !prefetch.isExpired()) {
+            InventoryManager.applyPlayerInventory(player, ticket, prefetch.getSnapshot(), false);
+            return;
+        }
 
-            // Load inventory from file
-            File file = new File(folder, player.getUniqueId() + ".inv");
+        final Storage storage = InventoryManager.storage;
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                InventoryManager.waitForSave(player.getUniqueId());
+
+                InventorySnapshot snapshot = null;
+                boolean failed = false;
+                try {
+                    byte[] data = storage.load(player.getUniqueId());
+                    if (data != null) {
+                        snapshot = InventorySerializer.readPlayer(data);
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    failed = true;
+                }
 
-            PlayerWrapper playerWrapper;
-            if (file.exists()) {
-                playerWrapper = InventorySerializer.loadPlayer(player, file);
-            } else {
-                playerWrapper = new PlayerWrapper(player);
-                playerWrapper.setBuyedSlots(0);
+                final InventorySnapshot loadedSnapshot = snapshot;
+                final boolean loadFailed = failed;
+                new BukkitRunnable() {
+                    @Override
+                    public void run() {
+                        InventoryManager.applyPlayerInventory(player, ticket, loadedSnapshot, loadFailed);
+                    }
+                }.runTask(RPGInventory.getInstance());
             }
+        }.runTaskAsynchronously(RPGInventory.getInstance());
+    }
 
-            PlayerInventoryLoadEvent.Pre event = new PlayerInventoryLoadEvent.Pre(player);
-            RPGInventory.getInstance().getServer().getPluginManager().callEvent(event);
+    /**
+     * Reads inventory of joining player before join, so {@link #loadPlayerInventory}
+     * will not wait for storage. Must be called from async thread.
+     * <p>
+     * Prefetched inventory is dropped if inventory is saved after prefetch was started
+     * (player was still online), so it never contains outdated data.
+     */
+    public static void prefetchPlayerInventory(@NotNull UUID uuid) {
+        Storage storage = InventoryManager.storage;
+        if (storage == null) {
+            return;
+        }
 
-            if (event.isCancelled()) {
-                return;
+        for (Map.Entry<UUID, Prefetch> entry : PREFETCHED.entrySet()) {
+            if (entry.getValue().isExpired()) {
+                PREFETCHED.remove(entry.getKey(), entry.getValue());
             }
+        }
+
+        Prefetch prefetch = new Prefetch();
+        PREFETCHED.put(uuid, prefetch);
+        InventoryManager.waitForSave(uuid);
 
-            playerWrapper.startHealthUpdater();
-            INVENTORIES.put(player.getUniqueId(), playerWrapper);
+        try {
+            byte[] data = storage.load(uuid);
+            prefetch.setLoaded(data == null ? null : InventorySerializer.readPlayer(data));
         } catch (IOException e) {
+            // Inventory will be loaded again on join
             e.printStackTrace();
+            PREFETCHED.remove(uuid, prefetch);
+        }
+    }
+
+    private static void applyPlayerInventory(@NotNull Player player, Object ticket,
+                                             @Nullable InventorySnapshot snapshot, boolean failed) {
+        if (LOADING.get(player.getUniqueId()) != ticket) {
+            return;
         }
 
+        LOADING.remove(player.getUniqueId());
+        if (failed || !player.isOnline()) {
+            return;
+        }
+
+        PlayerWrapper playerWrapper;
+        if (snapshot != null) {
+            playerWrapper = InventorySerializer.loadPlayer(player, snapshot);
+            playerWrapper.setSaved(playerWrapper.getModifications());
+        } else {
+            playerWrapper = new PlayerWrapper(player);
+            playerWrapper.setBuyedSlots(0);
+        }
+
+        PlayerInventoryLoadEvent.Pre event = new PlayerInventoryLoadEvent.Pre(player);
+        RPGInventory.getInstance().getServer().getPluginManager().callEvent(event);
+
+        if (event.isCancelled()) {
+            return;
+        }
+
+        // Updater reads items of loaded player
+        INVENTORIES.put(player.getUniqueId(), playerWrapper);
+        playerWrapper.startHealthUpdater();
+
         InventoryLocker.lockSlots(player);
         PetManager.initPlayer(player);
 
@@ -499,40 +649,144 @@ public class InventoryManager {
     }
 
     public static void unloadPlayerInventory(@NotNull Player player) {
-        if (!InventoryManager.playerIsLoaded(player)) {
-            return;
-        }
+        unloadPlayerInventories(Collections.singletonList(player));
+    }
 
-        player.closeInventory();
+    /**
+     * Unloads inventories of players, all of them are saved in one batch
+     */
+    public static void unloadPlayerInventories(@NotNull Collection<? extends Player> players) {
+        List<Player> loaded = new ArrayList<>(players.size());
+        for (Player player : players) {
+            if (!InventoryManager.playerIsLoaded(player)) {
+                LOADING.remove(player.getUniqueId());
+                PREFETCHED.remove(player.getUniqueId());
+                continue;
+            }
 
-        INVENTORIES.get(player.getUniqueId()).onUnload();
-        savePlayerInventory(player);
-        InventoryLocker.unlockSlots(player);
+            player.closeInventory();
+            INVENTORIES.get(player.getUniqueId()).onUnload();
+            loaded.add(player);
+        }
 
-        INVENTORIES.remove(player.getUniqueId());
+        savePlayerInventories(loaded, true);
+        for (Player player : loaded) {
+            InventoryLocker.unlockSlots(player);
+            INVENTORIES.remove(player.getUniqueId());
 
-        RPGInventory.getInstance().getServer().getPluginManager().callEvent(new PlayerInventoryUnloadEvent.Post(player));
+            RPGInventory.getInstance().getServer().getPluginManager().callEvent(new PlayerInventoryUnloadEvent.Post(player));
+        }
     }
 
     public static void savePlayerInventory(@NotNull Player player) {
-        if (!InventoryManager.playerIsLoaded(player)) {
+        savePlayerInventory(player, false);
+    }
+
+    /**
+     * Saves inventory of player
+     *
+     * @param force Save inventory even if it wasn't modified since last save
+     */
+    public static void savePlayerInventory(@NotNull Player player, boolean force) {
+        savePlayerInventories(Collections.singletonList(player), force);
+    }
+
+    public static void savePlayerInventories(@NotNull Collection<? extends Player> players) {
+        savePlayerInventories(players, false);
+    }
+
+    /**
+     * Saves inventories of players in one batch, so storage can write them in one transaction
+     *
+     * @param force Save inventories even if they wasn't modified since last save
+     */
+    public static void savePlayerInventories(@NotNull Collection<? extends Player> players, boolean force) {
+        final Map<UUID, InventorySnapshot> snapshots = new LinkedHashMap<>();
+        for (Player player : players) {
+            if (!InventoryManager.playerIsLoaded(player)) {
+                continue;
+            }
+
+            PlayerWrapper playerWrapper = INVENTORIES.get(player.getUniqueId());
+            if (!force && !playerWrapper.isModified()) {
+                continue;
+            }
+
+            playerWrapper.setSaved(playerWrapper.getModifications());
+            snapshots.put(player.getUniqueId(), InventorySerializer.snapshotPlayer(player, playerWrapper));
+        }
+
+        if (snapshots.isEmpty()) {
             return;
         }
 
-        PlayerWrapper playerWrapper = INVENTORIES.get(player.getUniqueId());
-        try {
-            File folder = new File(RPGInventory.getInstance().getDataFolder(), "inventories");
-            if (!folder.exists() && !folder.mkdir()) {
-                throw new IOException("Failed to create directory: " + folder.getName());
+        final Storage storage = InventoryManager.storage;
+        Runnable writer = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Map<UUID, byte[]> records = new LinkedHashMap<>();
+                    for (Map.Entry<UUID, InventorySnapshot> snapshot : snapshots.entrySet()) {
+                        records.put(snapshot.getKey(), InventorySerializer.serializePlayer(snapshot.getValue()));
+                    }
+
+                    storage.saveAll(records);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    for (UUID uuid : snapshots.keySet()) {
+                        InventoryManager.markModifiedLater(uuid);
+                    }
+                }
             }
+        };
 
-            File file = new File(folder, player.getUniqueId() + ".inv");
-            if (file.exists() && !file.delete()) {
-                throw new IOException("Failed to delete file: " + file.getName());
+        FutureTask<Void> task = new FutureTask<Void>(writer, null) {
+            @Override
+            protected void done() {
+                for (UUID uuid : snapshots.keySet()) {
+                    SAVING.remove(uuid, this);
+                }
             }
+        };
 
-            InventorySerializer.savePlayer(player, playerWrapper, file);
-        } catch (IOException e) {
+        for (UUID uuid : snapshots.keySet()) {
+            SAVING.put(uuid, task);
+            PREFETCHED.remove(uuid);
+        }
+
+        SaveExecutor.execute(task);
+    }
+
+    /**
+     * Marks inventory as modified in the main thread, so it will be saved again
+     */
+    private static void markModifiedLater(final UUID uuid) {
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                PlayerWrapper playerWrapper = INVENTORIES.get(uuid);
+                if (playerWrapper != null) {
+                    playerWrapper.markModified();
+                }
+            }
+        }.runTask(RPGInventory.getInstance());
+    }
+
+    /**
+     * Blocks current thread until last save of player's inventory will be written.
+     * Never call it from the main thread.
+     */
+    private static void waitForSave(UUID uuid) {
+        Future<?> saving = SAVING.get(uuid);
+        if (saving == null) {
+            return;
+        }
+
+        try {
+            saving.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
             e.printStackTrace();
         }
     }
@@ -544,27 +798,38 @@ public class InventoryManager {
 
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     public static boolean isQuickEmptySlot(ItemStack item) {
-        for (Slot quickSlot : SlotManager.getSlotManager().getQuickSlots()) {
-            if (quickSlot.isCup(item)) {
-                return true;
-            }
-        }
-
-        return false;
+        Slot slot = getHolderSlot(item);
+        return slot != null && slot.isQuick();
     }
 
     public static boolean isFilledSlot(ItemStack item) {
-        return fillSlot.equals(item);
+        return ItemClassifier.classify(item).is(ItemClassifier.Kind.FILL);
     }
 
     public static boolean isEmptySlot(ItemStack item) {
-        for (Slot slot : SlotManager.getSlotManager().getSlots()) {
-            if (slot.isCup(item)) {
-                return true;
+        return getHolderSlot(item) != null;
+    }
+
+    /**
+     * Returns slot which holder is the item or null if item isn't holder
+     */
+    @Nullable
+    private static Slot getHolderSlot(ItemStack item) {
+        ItemClassifier.Descriptor descriptor = ItemClassifier.classify(item);
+        if (descriptor.is(ItemClassifier.Kind.HOLDER)) {
+            return SlotManager.getSlotManager().getSlot(descriptor.getId());
+        }
+
+        // Holders created before they were marked with tag
+        if (descriptor.is(ItemClassifier.Kind.NONE) && !ItemUtils.isEmpty(item)) {
+            for (Slot slot : SlotManager.getSlotManager().getSlots()) {
+                if (slot.isCup(item)) {
+                    return slot;
+                }
             }
         }
 
-        return false;
+        return null;
     }
 
     @Contract("null -> false")
@@ -573,18 +838,17 @@ public class InventoryManager {
         return player != null && INVENTORIES.containsKey(player.getUniqueId());
     }
 
+    /**
+     * Checks if inventory of player is read right now and will be loaded in one of next ticks
+     */
+    @Contract("null -> false")
+    public static boolean isLoading(AnimalTamer player) {
+        return player != null && LOADING.containsKey(player.getUniqueId());
+    }
+
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     public static boolean isAllowedWorld(World world) {
-        List<String> list = Config.getConfig().getStringList("worlds.list");
-
-        switch (ListType.valueOf(Config.getConfig().getString("worlds.mode"))) {
-            case BLACKLIST:
-                return !list.contains(world.getName());
-            case WHITELIST:
-                return list.contains(world.getName());
-        }
-
-        return false;
+        return Config.getSettings().isAllowedWorld(world);
     }
 
     public static boolean buySlot(Player player, PlayerWrapper playerWrapper, Slot slot) {
@@ -606,13 +870,44 @@ public class InventoryManager {
         return true;
     }
 
-    public static void initPlayer(final Player player, boolean skipJoinMessage) {
-        boolean rpEnabled = Config.getConfig().getBoolean("resource-pack.enabled", true);
-        if (rpEnabled) {
-            player.addPotionEffect(new PotionEffect(PotionEffectType.BLINDNESS, 60, 1));
+    public static void initPlayer(final Player player, final boolean skipJoinMessage) {
+        if (RPGInventory.getPermissions().has(player, "rpginventory.admin")) {
+            RPGInventory.getInstance().checkUpdates(player);
+        }
+
+        if (!Config.getConfig().getBoolean("resource-pack.enabled", true)) {
+            InventoryManager.sendJoinMessages(player, false, false, skipJoinMessage);
+            return;
+        }
+
+        player.addPotionEffect(new PotionEffect(PotionEffectType.BLINDNESS, 60, 1));
+        Boolean newPlayer = InventoryManager.isNewPlayer(player);
+        if (newPlayer != null) {
+            InventoryManager.sendJoinMessages(player, true, newPlayer, skipJoinMessage);
+            return;
         }
 
-        if (InventoryManager.isNewPlayer(player) && rpEnabled) {
+        // Inventory will be read in background and reused on load, so join doesn't wait for storage
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                InventoryManager.prefetchPlayerInventory(player.getUniqueId());
+
+                new BukkitRunnable() {
+                    @Override
+                    public void run() {
+                        if (player.isOnline()) {
+                            boolean newPlayer = InventoryManager.isNewPlayer(player) == Boolean.TRUE;
+                            InventoryManager.sendJoinMessages(player, true, newPlayer, skipJoinMessage);
+                        }
+                    }
+                }.runTask(RPGInventory.getInstance());
+            }
+        }.runTaskAsynchronously(RPGInventory.getInstance());
+    }
+
+    private static void sendJoinMessages(final Player player, boolean rpEnabled, boolean newPlayer, boolean skipJoinMessage) {
+        if (newPlayer && rpEnabled) {
             if (Config.getConfig().getBoolean("join-messages.rp-info.enabled", true)) {
                 Runnable callback = new Runnable() {
                     @Override
@@ -644,13 +939,33 @@ public class InventoryManager {
                 InventoryManager.loadPlayerInventory(player);
             }
         }
+    }
 
-        if (RPGInventory.getPermissions().has(player, "rpginventory.admin")) {
-            RPGInventory.getInstance().checkUpdates(player);
+    private static class Prefetch {
+        private final long expiresAt = System.currentTimeMillis() + PREFETCH_TIMEOUT;
+
+        private volatile boolean loaded = false;
+        private volatile InventorySnapshot snapshot = null;
+
+        boolean isLoaded() {
+            return this.loaded;
         }
-    }
 
-    private enum ListType {
-        BLACKLIST, WHITELIST
+        boolean isExpired() {
+            return System.currentTimeMillis() > this.expiresAt;
+        }
+
+        /**
+         * @return Snapshot of inventory or null if player has no saved inventory
+         */
+        @Nullable
+        InventorySnapshot getSnapshot() {
+            return this.snapshot;
+        }
+
+        void setLoaded(@Nullable InventorySnapshot snapshot) {
+            this.snapshot = snapshot;
+            this.loaded = true;
+        }
     }
 }
\ No newline at end of file
@@ -52,7 +52,8 @@ public class InventorySaver {
 
         // Save armor
         List<ItemStack> armorList = new ArrayList<>(4);
-        List<Slot> armorSlots = SlotManager.getSlotManager().getArmorSlots();
+        // Shared list is read-only, matched slots are removed from the copy
+        List<Slot> armorSlots = new ArrayList<>(SlotManager.getSlotManager().getArmorSlots());
 
         for (ItemStack armor : player.getInventory().getArmorContents()) {
             if (saveArmor || CustomItem.isCustomItem(armor) && !ItemManager.getCustomItem(armor).isDrop()) {
@@ -156,6 +157,7 @@ public class InventorySaver {
 
         // Add drop
         drops.addAll(additionalDrops);
+        InventoryManager.get(player).markModified();
     }
 
     public static void restore(Player player) {
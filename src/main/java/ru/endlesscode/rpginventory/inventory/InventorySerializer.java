@@ -18,8 +18,9 @@
 
 package ru.endlesscode.rpginventory.inventory;
 
+import com.comphenix.protocol.wrappers.nbt.NbtBase;
 import com.comphenix.protocol.wrappers.nbt.NbtCompound;
-import com.comphenix.protocol.wrappers.nbt.NbtFactory;
+import com.comphenix.protocol.wrappers.nbt.NbtType;
 import com.comphenix.protocol.wrappers.nbt.io.NbtBinarySerializer;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
@@ -29,123 +30,221 @@ import ru.endlesscode.rpginventory.event.updater.HealthUpdater;
 import ru.endlesscode.rpginventory.inventory.slot.Slot;
 import ru.endlesscode.rpginventory.inventory.slot.SlotManager;
 import ru.endlesscode.rpginventory.misc.Config;
+import ru.endlesscode.rpginventory.storage.CompactFormat;
+import ru.endlesscode.rpginventory.storage.CompressionCodec;
 import ru.endlesscode.rpginventory.utils.ItemUtils;
 
 import java.io.*;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.Map;
 
 class InventorySerializer {
-    static void savePlayer(@NotNull Player player, @NotNull PlayerWrapper playerWrapper, @NotNull File file) throws IOException {
-        List<NbtCompound> slotList = new ArrayList<>();
-        try (DataOutputStream dataOutput = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(file)))) {
-            for (Slot slot : SlotManager.getSlotManager().getSlots()) {
-                if (slot.getSlotType() == Slot.SlotType.ARMOR) {
-                    continue;
-                }
+    // Types of saved health: nothing, health with bonuses (saved by old health updater) and health only
+    private static final int HEALTH_NONE = 0;
+    private static final int HEALTH_LEGACY = 1;
+    private static final int HEALTH_SAVED = 2;
+
+    /**
+     * Copies all data that should be saved. Must be called from the main thread.
+     */
+    @NotNull
+    static InventorySnapshot snapshotPlayer(@NotNull Player player, @NotNull PlayerWrapper playerWrapper) {
+        InventorySnapshot snapshot = new InventorySnapshot();
+        Inventory inventory = playerWrapper.getInventory();
+        for (Slot slot : SlotManager.getSlotManager().getSlots()) {
+            if (slot.getSlotType() == Slot.SlotType.ARMOR) {
+                continue;
+            }
 
-                List<NbtCompound> itemList = new ArrayList<>();
-                List<Integer> slotIds = slot.getSlotIds();
-                Inventory inventory = playerWrapper.getInventory();
-                for (int i = 0; i < slotIds.size(); i++) {
-                    int slotId = slotIds.get(i);
-                    ItemStack itemStack = inventory.getItem(slotId);
-                    if (!ItemUtils.isEmpty(itemStack) && !slot.isCup(itemStack)) {
-                        itemList.add(ItemUtils.itemStackToNBT(itemStack, i + ""));
-                    }
+            Map<Integer, NbtCompound> items = new LinkedHashMap<>();
+            List<Integer> slotIds = slot.getSlotIds();
+            for (int i = 0; i < slotIds.size(); i++) {
+                ItemStack itemStack = inventory.getItem(slotIds.get(i));
+                if (!ItemUtils.isEmpty(itemStack) && !slot.isCup(itemStack)) {
+                    items.put(i, ItemUtils.itemStackToNBT(itemStack, i + ""));
                 }
+            }
 
-                if (itemList.size() > 0 || playerWrapper.isBuyedSlot(slot.getName())) {
-                    NbtCompound slotNbt = NbtFactory.ofCompound(slot.getName());
-                    slotNbt.put("type", slot.getSlotType().name());
-                    if (playerWrapper.isBuyedSlot(slot.getName())) {
-                        slotNbt.put("buyed", "true");
-                    }
-                    slotNbt.put(NbtFactory.ofCompound("items", itemList));
-                    slotList.add(slotNbt);
+            boolean buyed = playerWrapper.isBuyedSlot(slot.getName());
+            if (items.size() > 0 || buyed) {
+                InventorySnapshot.SlotSnapshot slotSnapshot = snapshot.addSlot(slot.getName(), slot.getSlotType().name());
+                slotSnapshot.setBuyed(buyed);
+                for (Map.Entry<Integer, NbtCompound> item : items.entrySet()) {
+                    slotSnapshot.addItem(item.getKey(), item.getValue());
                 }
             }
+        }
+
+        snapshot.setBuyedSlots(playerWrapper.getBuyedGenericSlots());
+
+        snapshot.setHealth(playerWrapper.getHealthUpdater().getHealth());
+
+        return snapshot;
+    }
+
+    /**
+     * Returns snapshot in the format it is stored in storage.
+     * Can be called from any thread.
+     */
+    @NotNull
+    static byte[] serializePlayer(@NotNull final InventorySnapshot snapshot) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CompactFormat.write(output, CompactFormat.INVENTORY, new CompactFormat.BodyWriter() {
+            @Override
+            public void write(@NotNull DataOutputStream output) throws IOException {
+                InventorySerializer.writeBody(snapshot, output);
+            }
+        });
+
+        return output.toByteArray();
+    }
+
+    static void writeBody(@NotNull InventorySnapshot snapshot, @NotNull DataOutputStream dataOutput) throws IOException {
+        CompactFormat.MaterialDictionary dictionary = new CompactFormat.MaterialDictionary();
+        for (InventorySnapshot.SlotSnapshot slot : snapshot.getSlots()) {
+            for (NbtCompound item : slot.getItems().values()) {
+                dictionary.add(item);
+            }
+        }
+
+        CompactFormat.writeVarInt(dataOutput, snapshot.getBuyedSlots());
+        if (snapshot.getHealth() >= 0) {
+            dataOutput.writeByte(HEALTH_SAVED);
+            dataOutput.writeDouble(snapshot.getHealth());
+        } else {
+            dataOutput.writeByte(HEALTH_NONE);
+        }
+
+        dictionary.write(dataOutput);
+        CompactFormat.writeVarInt(dataOutput, snapshot.getSlots().size());
+        for (InventorySnapshot.SlotSnapshot slot : snapshot.getSlots()) {
+            dataOutput.writeUTF(slot.getName());
+            dataOutput.writeUTF(slot.getType());
+            dataOutput.writeBoolean(slot.isBuyed());
+            CompactFormat.writeVarInt(dataOutput, slot.getItems().size());
+            for (Map.Entry<Integer, NbtCompound> item : slot.getItems().entrySet()) {
+                CompactFormat.writeItem(dataOutput, dictionary, item.getKey(), item.getValue());
+            }
+        }
+    }
+
+    static InventorySnapshot readPlayer(@NotNull byte[] data) throws IOException {
+        try (InputStream input = new ByteArrayInputStream(data)) {
+            CompressionCodec codec = CompactFormat.readHeader(input, CompactFormat.INVENTORY);
+            try (DataInputStream dataInput = CompactFormat.openBody(input, codec)) {
+                return codec == null ? readLegacyPlayer(dataInput) : readBody(dataInput);
+            }
+        }
+    }
+
+    static InventorySnapshot readBody(@NotNull DataInputStream dataInput) throws IOException {
+        InventorySnapshot snapshot = new InventorySnapshot();
+        snapshot.setBuyedSlots(CompactFormat.readVarInt(dataInput));
+        int healthType = dataInput.readUnsignedByte();
+        if (healthType == HEALTH_LEGACY) {
+            // Other plugins' bonus isn't in base max health after unload, so it is skipped
+            snapshot.setLegacyHealth(dataInput.readDouble(), dataInput.readDouble());
+            dataInput.readDouble();
+        } else if (healthType == HEALTH_SAVED) {
+            snapshot.setHealth(dataInput.readDouble());
+        }
+
+        List<String> dictionary = CompactFormat.readDictionary(dataInput);
+        int slotCount = CompactFormat.readVarInt(dataInput);
+        for (int i = 0; i < slotCount; i++) {
+            InventorySnapshot.SlotSnapshot slot = snapshot.addSlot(dataInput.readUTF(), dataInput.readUTF());
+            slot.setBuyed(dataInput.readBoolean());
 
-            NbtCompound playerNbt = NbtFactory.ofCompound("Inventory");
-            playerNbt.put(NbtFactory.ofCompound("slots", slotList));
-            playerNbt.put("buyed-slots", playerWrapper.getBuyedGenericSlots());
+            int itemCount = CompactFormat.readVarInt(dataInput);
+            for (int j = 0; j < itemCount; j++) {
+                NbtCompound item = CompactFormat.readItem(dataInput, dictionary);
+                slot.addItem(Integer.parseInt(item.getName()), item);
+            }
+        }
 
-            HealthUpdater healthUpdater = playerWrapper.getHealthUpdater();
-            double attributesBonus = healthUpdater.getAttributesBonus();
-            double otherPluginsBonus = healthUpdater.getOtherPluginsBonus();
-            double initHealth = (attributesBonus == 0 && otherPluginsBonus == 0) ? -1 : healthUpdater.getHealth();
+        return snapshot;
+    }
 
-            playerNbt.put("health.current", initHealth == 0 ? player.getHealth() : initHealth);
-            playerNbt.put("health.attributes", healthUpdater.getAttributesBonus());
-            playerNbt.put("health.other-plugins", healthUpdater.getOtherPluginsBonus());
+    private static InventorySnapshot readLegacyPlayer(@NotNull DataInputStream dataInput) throws IOException {
+        InventorySnapshot snapshot = new InventorySnapshot();
+        NbtCompound playerNbt = NbtBinarySerializer.DEFAULT.deserializeCompound(dataInput);
+
+        // =========== Added in v1.1.8 ============
+        if (playerNbt.containsKey("free-slots")) {
+            snapshot.setBuyedSlots(playerNbt.getInteger("free-slots") - Config.getConfig().getInt("slots.free"));
+            playerNbt.remove("free-slots");
+        } else {
+            snapshot.setBuyedSlots(playerNbt.getInteger("buyed-slots"));
+            playerNbt.remove("buyed-slots");
+        }
+        // ========================================
 
-            NbtBinarySerializer.DEFAULT.serialize(playerNbt, dataOutput);
+        // =========== Added in v1.3.3 ============
+        if (playerNbt.containsKey("health.current")) {
+            snapshot.setLegacyHealth(playerNbt.getDouble("health.current"),
+                    playerNbt.containsKey("health.attributes") ? playerNbt.getDouble("health.attributes") : 0);
         }
+        // ========================================
+
+        // =========== Added in v1.2.1 ============
+        NbtCompound itemsNbt = playerNbt.containsKey("slots") ? playerNbt.getCompound("slots") : playerNbt;
+        // ========================================
+
+        for (String slotName : itemsNbt.getKeys()) {
+            NbtBase<?> slotBase = itemsNbt.getValue(slotName);
+            if (slotBase.getType() != NbtType.TAG_COMPOUND) {
+                continue;
+            }
+
+            NbtCompound slotNbt = (NbtCompound) slotBase;
+            if (!slotNbt.containsKey("type") || !slotNbt.containsKey("items")) {
+                continue;
+            }
+
+            InventorySnapshot.SlotSnapshot slot = snapshot.addSlot(slotName, slotNbt.getString("type"));
+            slot.setBuyed(slotNbt.containsKey("buyed"));
+
+            // Legacy files are loaded as before: items fill slot ids one by one
+            NbtCompound itemListNbt = slotNbt.getCompound("items");
+            int index = 0;
+            for (String key : itemListNbt.getKeys()) {
+                slot.addItem(index++, itemListNbt.getCompound(key));
+            }
+        }
+
+        return snapshot;
     }
 
-    static PlayerWrapper loadPlayer(@NotNull Player player, @NotNull File file) throws IOException {
+    static PlayerWrapper loadPlayer(@NotNull Player player, @NotNull InventorySnapshot snapshot) {
         PlayerWrapper playerWrapper = new PlayerWrapper(player);
         Inventory inventory = playerWrapper.getInventory();
+        playerWrapper.setBuyedSlots(snapshot.getBuyedSlots());
 
-        try (DataInputStream dataInput = new DataInputStream(new GZIPInputStream(new FileInputStream(file)))) {
-            NbtCompound playerNbt = NbtBinarySerializer.DEFAULT.deserializeCompound(dataInput);
+        HealthUpdater healthUpdater = playerWrapper.getHealthUpdater();
+        healthUpdater.setHealth(snapshot.getHealth());
+        if (snapshot.isLegacyHealth()) {
+            healthUpdater.setLegacyBonus(snapshot.getLegacyAttributesBonus());
+        }
 
-            // =========== Added in v1.1.8 ============
-            if (playerNbt.containsKey("free-slots")) {
-                playerWrapper.setBuyedSlots(playerNbt.getInteger("free-slots") - Config.getConfig().getInt("slots.free"));
-                playerNbt.remove("free-slots");
-            } else {
-                playerWrapper.setBuyedSlots(playerNbt.getInteger("buyed-slots"));
-                playerNbt.remove("buyed-slots");
+        for (Slot slot : SlotManager.getSlotManager().getSlots()) {
+            InventorySnapshot.SlotSnapshot slotSnapshot = snapshot.getSlot(slot.getName());
+            if (slotSnapshot == null || !slot.getSlotType().name().equals(slotSnapshot.getType())) {
+                continue;
             }
-            // ========================================
-
-            // =========== Added in v1.3.3 ============
-            HealthUpdater healthUpdater = playerWrapper.getHealthUpdater();
-            if (playerNbt.containsKey("health.current")) {
-                double health = playerNbt.getDouble("health.current");
-                if (health != -1) {
-                    healthUpdater.setHealth(health);
-                }
 
-                healthUpdater.setAttributesBonus(playerNbt.getDouble("health.attributes"));
-                healthUpdater.setOtherPluginsBonus(playerNbt.getDouble("health.other-plugins"));
+            if (slotSnapshot.isBuyed()) {
+                playerWrapper.setBuyedSlots(slot.getName());
             }
-            // ========================================
-
-            // =========== Added in v1.2.1 ============
-            NbtCompound itemsNbt = playerNbt.containsKey("slots") ? playerNbt.getCompound("slots") : playerNbt;
-            // ========================================
-
-            for (Slot slot : SlotManager.getSlotManager().getSlots()) {
-                if (itemsNbt.containsKey(slot.getName())) {
-                    NbtCompound slotNbt = itemsNbt.getCompound(slot.getName());
-                    if (slot.getSlotType() != Slot.SlotType.valueOf(slotNbt.getString("type"))) {
-                        continue;
-                    }
-
-                    if (slotNbt.containsKey("buyed")) {
-                        playerWrapper.setBuyedSlots(slot.getName());
-                    }
-
-                    NbtCompound itemListNbt = slotNbt.getCompound("items");
-                    List<ItemStack> itemList = new ArrayList<>();
-                    for (String key : itemListNbt.getKeys()) {
-                        itemList.add(ItemUtils.nbtToItemStack(itemListNbt.getCompound(key)));
-                    }
-
-                    List<Integer> slotIds = slot.getSlotIds();
-                    for (int i = 0; i < slotIds.size(); i++) {
-                        if (itemList.size() > i) {
-                            inventory.setItem(slotIds.get(i), itemList.get(i));
-                        }
-                    }
+
+            List<Integer> slotIds = slot.getSlotIds();
+            for (Map.Entry<Integer, NbtCompound> item : slotSnapshot.getItems().entrySet()) {
+                if (item.getKey() < slotIds.size()) {
+                    inventory.setItem(slotIds.get(item.getKey()), ItemUtils.nbtToItemStack(item.getValue()));
                 }
             }
         }
 
         return playerWrapper;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,138 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.inventory;
+
+import com.comphenix.protocol.wrappers.nbt.NbtCompound;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Decoded content of player's inventory file.
+ * It doesn't touch Bukkit objects, so it can be built outside of the main thread.
+ */
+class InventorySnapshot {
+    private final Map<String, SlotSnapshot> slots = new LinkedHashMap<>();
+
+    private int buyedSlots = 0;
+    private double health = -1;
+    private boolean legacyHealth = false;
+    private double legacyAttributesBonus = 0;
+
+    @NotNull
+    SlotSnapshot addSlot(@NotNull String name, @NotNull String type) {
+        SlotSnapshot slot = new SlotSnapshot(name, type);
+        this.slots.put(name, slot);
+        return slot;
+    }
+
+    @Nullable
+    SlotSnapshot getSlot(@NotNull String name) {
+        return this.slots.get(name);
+    }
+
+    @NotNull
+    Collection<SlotSnapshot> getSlots() {
+        return this.slots.values();
+    }
+
+    int getBuyedSlots() {
+        return this.buyedSlots;
+    }
+
+    void setBuyedSlots(int buyedSlots) {
+        this.buyedSlots = buyedSlots;
+    }
+
+    /**
+     * Returns health that should be restored after loading or -1
+     */
+    double getHealth() {
+        return this.health;
+    }
+
+    void setHealth(double health) {
+        this.health = health;
+    }
+
+    /**
+     * Returns true if inventory was saved when max health was changed directly, not with modifier
+     */
+    boolean isLegacyHealth() {
+        return this.legacyHealth;
+    }
+
+    /**
+     * Returns bonus that previous version subtracted from base max health on unload
+     */
+    double getLegacyAttributesBonus() {
+        return this.legacyAttributesBonus;
+    }
+
+    void setLegacyHealth(double health, double attributesBonus) {
+        this.health = health;
+        this.legacyHealth = true;
+        this.legacyAttributesBonus = attributesBonus;
+    }
+
+    static class SlotSnapshot {
+        private final String name;
+        private final String type;
+        private final Map<Integer, NbtCompound> items = new TreeMap<>();
+
+        private boolean buyed = false;
+
+        private SlotSnapshot(String name, String type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        String getName() {
+            return this.name;
+        }
+
+        String getType() {
+            return this.type;
+        }
+
+        boolean isBuyed() {
+            return this.buyed;
+        }
+
+        void setBuyed(boolean buyed) {
+            this.buyed = buyed;
+        }
+
+        /**
+         * Non-empty items by index of slot id. Every item is stored as NBT compound
+         * with "material", "amount", "data" and optional "tag" keys.
+         */
+        Map<Integer, NbtCompound> getItems() {
+            return this.items;
+        }
+
+        void addItem(int index, @NotNull NbtCompound item) {
+            this.items.put(index, item);
+        }
+    }
+}
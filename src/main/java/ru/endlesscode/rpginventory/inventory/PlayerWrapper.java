@@ -38,6 +38,7 @@ import ru.endlesscode.rpginventory.inventory.slot.Slot;
 import ru.endlesscode.rpginventory.inventory.slot.SlotManager;
 import ru.endlesscode.rpginventory.item.CustomItem;
 import ru.endlesscode.rpginventory.item.ItemManager;
+import ru.endlesscode.rpginventory.item.StatVector;
 import ru.endlesscode.rpginventory.pet.Attributes;
 import ru.endlesscode.rpginventory.pet.PetManager;
 import ru.endlesscode.rpginventory.pet.PetType;
@@ -59,6 +60,7 @@ public class PlayerWrapper implements InventoryHolder {
     private final Map<String, Integer> buyedSlots = new HashMap<>();
     private final List<String> permissions = new ArrayList<>();
     private final HealthUpdater healthUpdater;
+    private final StatVector stats = new StatVector();
 
     private InventoryView inventoryView;
     private Slot slotPreparedToBuy = null;
@@ -70,11 +72,17 @@ public class PlayerWrapper implements InventoryHolder {
     private boolean falling = false;
     private boolean flying = false;
     private int fallTime = 0;
+    private boolean elytra = false;
+    private long elytraCheckedAt = -1;
 
     private String lastMessage = "";
     private long lastMessageTime = 0;
     private boolean pocketCraft = false;
 
+    // Modification epoch, new wrapper is modified until it will be saved
+    private long modifications = 0;
+    private long savedModifications = -1;
+
     public PlayerWrapper(OfflinePlayer player) {
         this.player = player;
         this.inventory = Bukkit.createInventory(this, 54, InventoryManager.TITLE);
@@ -83,13 +91,17 @@ public class PlayerWrapper implements InventoryHolder {
     }
 
     void startHealthUpdater() {
-        this.healthUpdater.runTaskTimer(RPGInventory.getInstance(), 1, 1);
+        this.healthUpdater.start();
     }
 
     public HealthUpdater getHealthUpdater() {
         return healthUpdater;
     }
 
+    public StatVector getStats() {
+        return stats;
+    }
+
     @Override
     public Inventory getInventory() {
         return inventory;
@@ -141,6 +153,7 @@ public class PlayerWrapper implements InventoryHolder {
 
     private void setBuyedSlots(String slotType, int buyedSlots) {
         this.buyedSlots.put(slotType, buyedSlots);
+        this.markModified();
     }
 
     public boolean isBuyedSlot(String slotType) {
@@ -189,7 +202,6 @@ public class PlayerWrapper implements InventoryHolder {
             speedAttribute.removeModifier(rpgInvModifier);
         }
 
-        this.healthUpdater.setHealth(player.getHealth());
         this.healthUpdater.stop();
     }
 
@@ -235,6 +247,7 @@ public class PlayerWrapper implements InventoryHolder {
             Player player = this.player.getPlayer();
             Slot elytraSlot = SlotManager.getSlotManager().getElytraSlot();
             this.inventory.setItem(elytraSlot.getSlotId(), player.getEquipment().getChestplate());
+            this.markModified();
             player.getEquipment().setChestplate(this.savedChestplate);
             this.savedChestplate = null;
         }
@@ -260,6 +273,19 @@ public class PlayerWrapper implements InventoryHolder {
         }
     }
 
+    /**
+     * Checks that elytra slot contains item. Result is cached until inventory will be modified
+     */
+    public boolean hasElytra() {
+        if (this.elytraCheckedAt != this.modifications) {
+            Slot elytraSlot = SlotManager.getSlotManager().getElytraSlot();
+            this.elytra = elytraSlot != null && !elytraSlot.isCup(this.inventory.getItem(elytraSlot.getSlotId()));
+            this.elytraCheckedAt = this.modifications;
+        }
+
+        return this.elytra;
+    }
+
     public boolean isFlying() {
         return flying;
     }
@@ -291,16 +317,15 @@ public class PlayerWrapper implements InventoryHolder {
     }
 
     public void updateStatsLater() {
+        this.stats.invalidate();
         new StatsUpdater(player.getPlayer()).runTaskLater(RPGInventory.getInstance(), 1);
     }
 
     public boolean resetMaxHealth() {
-        if (this.healthUpdater.getAttributesBonus() == 0 && this.healthUpdater.getOtherPluginsBonus() == 0) {
+        if (!this.healthUpdater.resetMaxHealth()) {
             return false;
         }
 
-        this.healthUpdater.setAttributesBonus(0);
-        this.healthUpdater.setOtherPluginsBonus(0);
         this.player.getPlayer().kickPlayer(RPGInventory.getLanguage().getCaption("message.fixhp"));
         return true;
     }
@@ -356,4 +381,23 @@ public class PlayerWrapper implements InventoryHolder {
     public boolean isPocketCraft() {
         return this.pocketCraft;
     }
+
+    /**
+     * Should be called on every change of data that is saved to inventory file
+     */
+    public void markModified() {
+        this.modifications++;
+    }
+
+    public boolean isModified() {
+        return this.modifications != this.savedModifications;
+    }
+
+    long getModifications() {
+        return this.modifications;
+    }
+
+    void setSaved(long modifications) {
+        this.savedModifications = modifications;
+    }
 }
@@ -0,0 +1,181 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.inventory;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
+import ru.endlesscode.rpginventory.RPGInventory;
+import ru.endlesscode.rpginventory.storage.CompactFormat;
+import ru.endlesscode.rpginventory.storage.CompressionCodec;
+import ru.endlesscode.rpginventory.storage.Storage;
+import ru.endlesscode.rpginventory.utils.StringUtils;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compares compression codecs on saved player files.
+ * Bodies of files are encoded once, then every codec compresses and decompresses them several times.
+ */
+public class StorageBenchmark {
+    private static final int MAX_FILES = 200;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 20;
+
+    private static boolean running = false;
+
+    private StorageBenchmark() {
+    }
+
+    public static void run(@NotNull final CommandSender sender) {
+        if (running) {
+            sender.sendMessage(StringUtils.coloredLine("&cBenchmark is already running..."));
+            return;
+        }
+
+        running = true;
+        sender.sendMessage(StringUtils.coloredLine("&3Benchmark started, it can take some time..."));
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                final List<String> result = StorageBenchmark.measure();
+                new BukkitRunnable() {
+                    @Override
+                    public void run() {
+                        running = false;
+                        for (String line : result) {
+                            sender.sendMessage(StringUtils.coloredLine(line));
+                        }
+                    }
+                }.runTask(RPGInventory.getInstance());
+            }
+        }.runTaskAsynchronously(RPGInventory.getInstance());
+    }
+
+    @NotNull
+    private static List<String> measure() {
+        List<String> result = new ArrayList<>();
+        List<byte[]> bodies = readBodies();
+        if (bodies.isEmpty()) {
+            result.add("&cThere are no saved inventories to benchmark");
+            return result;
+        }
+
+        long rawBytes = 0;
+        for (byte[] body : bodies) {
+            rawBytes += body.length;
+        }
+
+        result.add("&3Saved inventories: &6" + bodies.size() + "&3, raw body: &6" + rawBytes / bodies.size() + " &3bytes per file");
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            try {
+                result.add(measure(codec, bodies));
+            } catch (IOException e) {
+                result.add("&c" + codec + ": " + e.getMessage());
+            }
+        }
+
+        return result;
+    }
+
+    @NotNull
+    private static String measure(@NotNull CompressionCodec codec, @NotNull List<byte[]> bodies) throws IOException {
+        int level = CompactFormat.getLevel();
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            for (byte[] body : bodies) {
+                decompress(codec, compress(codec, level, body));
+            }
+        }
+
+        long compressedBytes = 0;
+        long compressTime = 0;
+        long decompressTime = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            for (byte[] body : bodies) {
+                long start = System.nanoTime();
+                byte[] compressed = compress(codec, level, body);
+                long middle = System.nanoTime();
+                decompress(codec, compressed);
+                long end = System.nanoTime();
+
+                compressTime += middle - start;
+                decompressTime += end - middle;
+                compressedBytes += compressed.length;
+            }
+        }
+
+        long count = (long) ROUNDS * bodies.size();
+        return String.format("&6%s%s&3: &6%d &3bytes, write &6%.1f &3us, read &6%.1f &3us per file",
+                codec, codec == CompressionCodec.DEFLATE ? "(" + level + ")" : "",
+                compressedBytes / count, compressTime / 1000.0 / count, decompressTime / 1000.0 / count);
+    }
+
+    @NotNull
+    private static byte[] compress(@NotNull CompressionCodec codec, int level, @NotNull byte[] body) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(body.length);
+        OutputStream compressedOutput = codec.compress(output, level);
+        compressedOutput.write(body);
+        codec.finish(compressedOutput);
+        return output.toByteArray();
+    }
+
+    private static void decompress(@NotNull CompressionCodec codec, @NotNull byte[] compressed) throws IOException {
+        byte[] buffer = new byte[4096];
+        try (InputStream input = codec.decompress(new ByteArrayInputStream(compressed))) {
+            //noinspection StatementWithEmptyBody
+            while (input.read(buffer) != -1) {
+            }
+        }
+    }
+
+    @NotNull
+    private static List<byte[]> readBodies() {
+        List<byte[]> bodies = new ArrayList<>();
+        Storage storage = InventoryManager.getStorage();
+        List<UUID> ids;
+        try {
+            ids = storage.list();
+        } catch (IOException e) {
+            RPGInventory.getPluginLogger().warning("Can't list saved inventories: " + e.getMessage());
+            return bodies;
+        }
+
+        for (int i = 0; i < ids.size() && bodies.size() < MAX_FILES; i++) {
+            try {
+                byte[] data = storage.load(ids.get(i));
+                if (data == null) {
+                    continue;
+                }
+
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                DataOutputStream dataOutput = new DataOutputStream(output);
+                InventorySerializer.writeBody(InventorySerializer.readPlayer(data), dataOutput);
+                dataOutput.flush();
+                bodies.add(output.toByteArray());
+            } catch (IOException e) {
+                RPGInventory.getPluginLogger().warning("Can't read inventory " + ids.get(i) + ": " + e.getMessage());
+            }
+        }
+
+        return bodies;
+    }
+}
@@ -38,6 +38,8 @@ public class Backpack {
 
     private long lastUse;
     private ItemStack[] contents;
+    private boolean modified = true;
+    private boolean opened = false;
 
     public Backpack(BackpackType backpackType) {
         this(backpackType, UUID.randomUUID());
@@ -75,6 +77,16 @@ public class Backpack {
 
         player.openInventory(inventory);
         InventoryManager.get(player).setBackpack(this);
+        this.opened = true;
+    }
+
+    public void onClose() {
+        this.onUse();
+        this.opened = false;
+    }
+
+    boolean isOpened() {
+        return this.opened;
     }
 
     ItemStack[] getContents() {
@@ -83,10 +95,12 @@ public class Backpack {
 
     void setContents(ItemStack[] contents) {
         this.contents = contents;
+        this.modified = true;
     }
 
     public void onUse() {
         this.lastUse = System.currentTimeMillis();
+        this.modified = true;
     }
 
     long getLastUse() {
@@ -97,8 +111,23 @@ public class Backpack {
         this.lastUse = lastUse;
     }
 
+    /**
+     * Checks if backpack was changed since last save
+     */
+    boolean isModified() {
+        return this.modified;
+    }
+
+    void setModified(boolean modified) {
+        this.modified = modified;
+    }
+
     boolean isOverdue() {
+        return Backpack.isOverdue(this.lastUse);
+    }
+
+    static boolean isOverdue(long lastUse) {
         int lifeTime = Config.getConfig().getInt("backpacks.expiration-time", 0);
-        return lifeTime != 0 && (System.currentTimeMillis() - this.lastUse)/(1_000*60*60*24) > lifeTime;
+        return lifeTime != 0 && (System.currentTimeMillis() - lastUse)/(1_000*60*60*24) > lifeTime;
     }
 }
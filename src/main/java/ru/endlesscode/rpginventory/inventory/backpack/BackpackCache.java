@@ -0,0 +1,83 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.inventory.backpack;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * LRU cache of loaded backpacks. Used only from the main thread.
+ */
+class BackpackCache {
+    private final Map<UUID, Backpack> backpacks = new LinkedHashMap<>(16, 0.75f, true);
+    private final EvictionListener listener;
+
+    private final int capacity;
+
+    BackpackCache(int capacity, @NotNull EvictionListener listener) {
+        this.capacity = capacity;
+        this.listener = listener;
+    }
+
+    @Nullable
+    Backpack get(@NotNull UUID id) {
+        return this.backpacks.get(id);
+    }
+
+    boolean contains(@NotNull UUID id) {
+        return this.backpacks.containsKey(id);
+    }
+
+    void put(@NotNull Backpack backpack) {
+        this.backpacks.put(backpack.getUniqueId(), backpack);
+        this.evict();
+    }
+
+    @NotNull
+    Collection<Backpack> values() {
+        return this.backpacks.values();
+    }
+
+    int size() {
+        return this.backpacks.size();
+    }
+
+    /**
+     * Removes least recently used backpacks until cache fits in capacity.
+     * Opened backpacks are never evicted, so cache can be a bit bigger than capacity.
+     */
+    private void evict() {
+        Iterator<Backpack> iterator = this.backpacks.values().iterator();
+        while (this.backpacks.size() > this.capacity && iterator.hasNext()) {
+            Backpack backpack = iterator.next();
+            if (backpack.isOpened()) {
+                continue;
+            }
+
+            iterator.remove();
+            this.listener.onEvict(backpack);
+        }
+    }
+
+    interface EvictionListener {
+        void onEvict(@NotNull Backpack backpack);
+    }
+}
@@ -22,22 +22,36 @@ import org.bukkit.Material;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventPriority;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import ru.endlesscode.rpginventory.RPGInventory;
+import ru.endlesscode.rpginventory.event.listener.ClickDispatcher;
 import ru.endlesscode.rpginventory.event.listener.BackpackListener;
 import ru.endlesscode.rpginventory.inventory.InventoryManager;
 import ru.endlesscode.rpginventory.inventory.slot.Slot;
 import ru.endlesscode.rpginventory.inventory.slot.SlotManager;
 import ru.endlesscode.rpginventory.misc.Config;
+import ru.endlesscode.rpginventory.misc.SaveExecutor;
+import ru.endlesscode.rpginventory.storage.CompactFormat;
+import ru.endlesscode.rpginventory.storage.Storage;
+import ru.endlesscode.rpginventory.storage.StorageType;
+import ru.endlesscode.rpginventory.utils.ItemClassifier;
 import ru.endlesscode.rpginventory.utils.ItemUtils;
+import ru.endlesscode.rpginventory.utils.PlayerUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * Created by OsipXD on 05.10.2015
@@ -46,9 +60,18 @@ import java.util.*;
  */
 public class BackpackManager {
     private static final HashMap<String, BackpackType> BACKPACK_TYPES = new HashMap<>();
-    private static final HashMap<UUID, Backpack> BACKPACKS = new HashMap<>();
+    private static final Map<UUID, BackpackWriter> WRITING = new ConcurrentHashMap<>();
+    // Players that wait for opening of backpacks which are read right now
+    private static final Map<UUID, List<Player>> LOADING = new HashMap<>();
+    // Last use of stored backpacks, so search of overdue backpacks reads every record only once
+    private static final Map<UUID, Long> LAST_USE = new ConcurrentHashMap<>();
+    private static final long MAINTENANCE_DELAY = 20*60;
+    private static final long MAINTENANCE_PERIOD = 20*60*60;
     private static int BACKPACK_LIMIT;
 
+    private static BackpackCache cache = null;
+    private static Storage storage = null;
+
     public static boolean init(RPGInventory instance) {
         if (!isEnabled()) {
             return false;
@@ -67,10 +90,9 @@ public class BackpackManager {
                 BackpackType backpackType = new BackpackType(petsConfig.getConfigurationSection("backpacks." + key));
                 BACKPACK_TYPES.put(key, backpackType);
             }
+            ItemClassifier.clearCache();
 
-            BackpackManager.loadBackpacks();
             RPGInventory.getPluginLogger().info(BACKPACK_TYPES.size() + " backpack type(s) has been loaded");
-            RPGInventory.getPluginLogger().info(BACKPACKS.size() + " backpack(s) has been loaded");
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -80,13 +102,47 @@ public class BackpackManager {
             return false;
         }
 
+        try {
+            storage = StorageType.open("backpacks", ".bp");
+        } catch (IOException e) {
+            RPGInventory.getPluginLogger().warning("Failed to open backpack storage: " + e.getMessage());
+            return false;
+        }
+
         BACKPACK_LIMIT = Config.getConfig().getInt("backpacks.limit", 0);
+        LOADING.clear();
+        LAST_USE.clear();
+        cache = new BackpackCache(Config.getConfig().getInt("backpacks.cache-size", 1000), new BackpackCache.EvictionListener() {
+            @Override
+            public void onEvict(@NotNull Backpack backpack) {
+                if (backpack.isModified()) {
+                    BackpackManager.saveBackpack(backpack);
+                }
+            }
+        });
+        BackpackManager.startMaintenance();
 
         // Register events
-        instance.getServer().getPluginManager().registerEvents(new BackpackListener(), instance);
+        BackpackListener backpackListener = new BackpackListener();
+        instance.getServer().getPluginManager().registerEvents(backpackListener, instance);
+        ClickDispatcher.register(EventPriority.LOWEST, backpackListener);
         return true;
     }
 
+    public static void closeStorage() {
+        if (storage == null) {
+            return;
+        }
+
+        try {
+            storage.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        storage = null;
+    }
+
     private static boolean isEnabled() {
         return SlotManager.getSlotManager().getBackpackSlot() != null;
     }
@@ -102,83 +158,337 @@ public class BackpackManager {
         return backpackType == null ? new ItemStack(Material.AIR) : backpackType.getItem();
     }
 
+    /**
+     * Opens backpack. Backpack that isn't loaded yet is read from storage in background
+     * and opened in one of next ticks.
+     *
+     * @return true if backpack is opened or will be opened
+     */
     @Contract("_, null -> false")
     public static boolean open(@NotNull Player player, @Nullable ItemStack bpItem) {
-        if (ItemUtils.isEmpty(bpItem)) {
+        ItemClassifier.Descriptor descriptor = ItemClassifier.classify(bpItem);
+        BackpackType type = descriptor.getBackpackType();
+        if (type == null) {
             return false;
         }
 
-        BackpackType type;
-        String bpId = ItemUtils.getTag(bpItem, ItemUtils.BACKPACK_TAG);
+        String bpUniqueId = descriptor.getUid();
+        if (bpUniqueId == null) {
+            Backpack backpack = type.createBackpack();
+            ItemUtils.setTag(bpItem, ItemUtils.BACKPACK_UID_TAG, backpack.getUniqueId().toString());
+            cache.put(backpack);
+            backpack.open(player);
+            return true;
+        }
 
-        if (bpId == null || (type = BackpackManager.getBackpackType(bpId)) == null) {
-            return false;
+        UUID id = UUID.fromString(bpUniqueId);
+        Backpack backpack = BackpackManager.getLoadedBackpack(id);
+        if (backpack != null) {
+            backpack.open(player);
+            return true;
         }
 
-        Backpack backpack;
-        String bpUniqueId = ItemUtils.getTag(bpItem, ItemUtils.BACKPACK_UID_TAG);
-        if (bpUniqueId == null || !BACKPACKS.containsKey(UUID.fromString(bpUniqueId))) {
-            backpack = type.createBackpack();
-            ItemUtils.setTag(bpItem, ItemUtils.BACKPACK_UID_TAG, backpack.getUniqueId().toString());
-            BACKPACKS.put(backpack.getUniqueId(), backpack);
-        } else {
-            backpack = BACKPACKS.get(UUID.fromString(bpUniqueId));
+        List<Player> openers = LOADING.get(id);
+        if (openers == null) {
+            openers = new ArrayList<>();
+            LOADING.put(id, openers);
+            BackpackManager.loadAndOpen(type, id);
+        }
+
+        if (!openers.contains(player)) {
+            openers.add(player);
         }
 
-        backpack.open(player);
         return true;
     }
 
+    private static void loadAndOpen(@NotNull final BackpackType type, @NotNull final UUID id) {
+        final Storage storage = BackpackManager.storage;
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                byte[] data = null;
+                IOException error = null;
+                try {
+                    data = storage.load(id);
+                } catch (IOException e) {
+                    error = e;
+                }
+
+                final byte[] loadedData = data;
+                final IOException loadError = error;
+                new BukkitRunnable() {
+                    @Override
+                    public void run() {
+                        List<Player> openers = LOADING.remove(id);
+                        if (openers == null) {
+                            return;
+                        }
+
+                        Backpack backpack;
+                        try {
+                            if (loadError != null) {
+                                throw loadError;
+                            }
+
+                            backpack = BackpackManager.getBackpack(id, loadedData);
+                        } catch (IOException e) {
+                            RPGInventory.getPluginLogger().warning("Can't load backpack " + id + ": " + e.getMessage());
+                            for (Player player : openers) {
+                                PlayerUtils.sendMessage(player, RPGInventory.getLanguage().getCaption("backpack.error"));
+                            }
+                            return;
+                        }
+
+                        // Record is absent or overdue, so there is nothing to overwrite
+                        if (backpack == null) {
+                            backpack = new Backpack(type, id);
+                            cache.put(backpack);
+                        }
+
+                        for (Player player : openers) {
+                            if (player.isOnline() && InventoryManager.playerIsLoaded(player)) {
+                                backpack.open(player);
+                            }
+                        }
+                    }
+                }.runTask(RPGInventory.getInstance());
+            }
+        }.runTaskAsynchronously(RPGInventory.getInstance());
+    }
+
     @Nullable
     public static BackpackType getBackpackType(String bpId) {
         return BACKPACK_TYPES.get(bpId);
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
     public static void saveBackpacks() {
-        File folder = new File(RPGInventory.getInstance().getDataFolder(), "backpacks");
-        if (!folder.exists()) {
-            folder.mkdir();
+        if (cache == null) {
+            return;
         }
 
-        try {
-            for (Map.Entry<UUID, Backpack> entry : BACKPACKS.entrySet()) {
-                File bpFile = new File(folder, entry.getKey().toString() + ".bp");
-                BackpackSerializer.saveBackpack(entry.getValue(), bpFile);
+        int saved = 0;
+        for (Backpack backpack : cache.values()) {
+            if (backpack.isModified()) {
+                BackpackManager.saveBackpack(backpack);
+                saved++;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+        }
+
+        if (saved > 0) {
+            RPGInventory.getPluginLogger().info(saved + " backpack(s) has been saved, " + (cache.size() - saved) + " unchanged skipped");
         }
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
-    private static void loadBackpacks() {
-        try {
-            File folder = new File(RPGInventory.getInstance().getDataFolder(), "backpacks");
-            if (!folder.exists()) {
-                folder.mkdir();
+    /**
+     * Converts contents of backpack to NBT in the main thread and writes it in background.
+     * If writing fails, backpack is returned to cache to be saved again.
+     */
+    private static void saveBackpack(final Backpack backpack) {
+        final UUID id = backpack.getUniqueId();
+        final long lastUse = backpack.getLastUse();
+        final CompactFormat.BodyWriter body = BackpackSerializer.snapshotBackpack(
+                backpack.getType().getId(), backpack.getContents(), lastUse);
+        final Storage storage = BackpackManager.storage;
+        backpack.setModified(false);
+
+        Callable<Void> writer = new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                storage.save(id, BackpackSerializer.serializeBackpack(body));
+                LAST_USE.put(id, lastUse);
+                return null;
+            }
+        };
+
+        BackpackWriter task = new BackpackWriter(writer, backpack);
+        WRITING.put(id, task);
+        SaveExecutor.execute(task);
+    }
+
+    /**
+     * Returns backpack from cache or backpack that is written right now
+     */
+    @Nullable
+    private static Backpack getLoadedBackpack(@NotNull UUID id) {
+        Backpack backpack = cache.get(id);
+        if (backpack != null) {
+            return backpack;
+        }
+
+        // Backpack can be evicted, but not written yet
+        BackpackWriter writer = WRITING.get(id);
+        if (writer != null) {
+            backpack = writer.getBackpack();
+            cache.put(backpack);
+            return backpack;
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns loaded backpack or decodes backpack from stored data
+     *
+     * @param data Data loaded from storage before the call, null if record is absent
+     * @return Backpack or null if record is absent or overdue (overdue record is removed)
+     * @throws IOException if stored data can't be decoded, record stays untouched
+     */
+    @Nullable
+    private static Backpack getBackpack(@NotNull UUID id, @Nullable byte[] data) throws IOException {
+        // Backpack could be loaded or saved while data was read
+        Backpack backpack = BackpackManager.getLoadedBackpack(id);
+        if (backpack != null) {
+            return backpack;
+        }
+
+        if (data == null) {
+            return null;
+        }
+
+        backpack = BackpackSerializer.loadBackpack(data, id);
+        if (backpack == null) {
+            throw new IOException("Unknown type of stored backpack");
+        }
+
+        if (backpack.isOverdue()) {
+            BackpackManager.removeBackpacks(Collections.singletonList(id));
+            return null;
+        }
+
+        LAST_USE.put(id, backpack.getLastUse());
+        cache.put(backpack);
+        return backpack;
+    }
+
+    /**
+     * Removes records in the save thread, so they are removed before any later write
+     */
+    private static void removeBackpacks(@NotNull final List<UUID> ids) {
+        final Storage storage = BackpackManager.storage;
+        SaveExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int removed = 0;
+                for (UUID id : ids) {
+                    try {
+                        storage.delete(id);
+                        LAST_USE.remove(id);
+                        removed++;
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+
+                if (removed > 0) {
+                    RPGInventory.getPluginLogger().info(removed + " overdue backpack(s) has been removed");
+                }
             }
+        });
+    }
 
-            //noinspection ConstantConditions
-            for (File bpFile : folder.listFiles()) {
-                if (bpFile.getName().endsWith(".bp")) {
-                    Backpack backpack = BackpackSerializer.loadBackpack(bpFile);
-                    if (backpack == null || backpack.isOverdue()) {
-                        bpFile.delete();
-                        continue;
+    /**
+     * Maintains storage and searches overdue backpacks in the save thread, so it doesn't
+     * race with writes. Overdue backpacks are removed in the main thread.
+     */
+    private static void startMaintenance() {
+        final Storage storage = BackpackManager.storage;
+        final boolean expirable = Config.getConfig().getInt("backpacks.expiration-time", 0) != 0;
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                SaveExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            storage.maintain();
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+
+                        if (!expirable) {
+                            return;
+                        }
+
+                        final List<UUID> overdue;
+                        try {
+                            overdue = BackpackManager.findOverdue(storage);
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                            return;
+                        }
+
+                        if (overdue.isEmpty()) {
+                            return;
+                        }
+
+                        new BukkitRunnable() {
+                            @Override
+                            public void run() {
+                                BackpackManager.removeOverdue(overdue);
+                            }
+                        }.runTask(RPGInventory.getInstance());
                     }
+                });
+            }
+        }.runTaskTimer(RPGInventory.getInstance(), MAINTENANCE_DELAY, MAINTENANCE_PERIOD);
+    }
 
-                    BACKPACKS.put(backpack.getUniqueId(), backpack);
+    /**
+     * Reads only records which last use isn't known yet, last use of others is updated on save
+     */
+    @NotNull
+    private static List<UUID> findOverdue(@NotNull Storage storage) throws IOException {
+        List<UUID> overdue = new ArrayList<>();
+        for (UUID id : storage.list()) {
+            Long lastUse = LAST_USE.get(id);
+            if (lastUse != null) {
+                if (Backpack.isOverdue(lastUse)) {
+                    overdue.add(id);
                 }
+
+                continue;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+
+            try {
+                byte[] data = storage.load(id);
+                if (data == null) {
+                    continue;
+                }
+
+                lastUse = BackpackSerializer.readLastUse(data);
+                if (lastUse == null || Backpack.isOverdue(lastUse)) {
+                    overdue.add(id);
+                } else {
+                    LAST_USE.put(id, lastUse);
+                }
+            } catch (IOException e) {
+                RPGInventory.getPluginLogger().warning("Can't read backpack " + id + ": " + e.getMessage());
+            }
+        }
+
+        return overdue;
+    }
+
+    private static void removeOverdue(List<UUID> overdue) {
+        List<UUID> unused = new ArrayList<>(overdue.size());
+        for (UUID id : overdue) {
+            // Backpack was used while we searched overdue backpacks
+            if (cache.contains(id) || WRITING.containsKey(id)) {
+                continue;
+            }
+
+            unused.add(id);
+        }
+
+        if (!unused.isEmpty()) {
+            BackpackManager.removeBackpacks(unused);
         }
     }
 
     @Contract("null -> false")
     public static boolean isBackpack(ItemStack item) {
-        return !ItemUtils.isEmpty(item) && ItemUtils.hasTag(item, ItemUtils.BACKPACK_TAG);
+        return ItemClassifier.classify(item).is(ItemClassifier.Kind.BACKPACK);
     }
 
     public static boolean playerCanTakeBackpack(Player player) {
@@ -209,4 +519,50 @@ public class BackpackManager {
     public static int getLimit() {
         return BACKPACK_LIMIT;
     }
-}
+
+    private static class BackpackWriter extends FutureTask<Void> {
+        private final Backpack backpack;
+
+        BackpackWriter(Callable<Void> writer, Backpack backpack) {
+            super(writer);
+            this.backpack = backpack;
+        }
+
+        Backpack getBackpack() {
+            return this.backpack;
+        }
+
+        /**
+         * Failed writer stays in WRITING until the backpack is returned to cache,
+         * so modified backpack can't be lost
+         */
+        @Override
+        protected void done() {
+            try {
+                this.get();
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+                this.returnToCache();
+                return;
+            } catch (InterruptedException | CancellationException ignored) {
+            }
+
+            WRITING.remove(this.backpack.getUniqueId(), this);
+        }
+
+        private void returnToCache() {
+            final BackpackWriter writer = this;
+            new BukkitRunnable() {
+                @Override
+                public void run() {
+                    UUID id = writer.backpack.getUniqueId();
+                    WRITING.remove(id, writer);
+                    writer.backpack.setModified(true);
+                    if (!cache.contains(id)) {
+                        cache.put(writer.backpack);
+                    }
+                }
+            }.runTask(RPGInventory.getInstance());
+        }
+    }
+}
\ No newline at end of file
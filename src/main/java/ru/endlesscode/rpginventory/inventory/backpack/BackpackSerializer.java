@@ -19,21 +19,17 @@
 package ru.endlesscode.rpginventory.inventory.backpack;
 
 import com.comphenix.protocol.wrappers.nbt.NbtCompound;
-import com.comphenix.protocol.wrappers.nbt.NbtFactory;
 import com.comphenix.protocol.wrappers.nbt.io.NbtBinarySerializer;
 import org.bukkit.Material;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import ru.endlesscode.rpginventory.utils.FileUtils;
+import ru.endlesscode.rpginventory.storage.CompactFormat;
+import ru.endlesscode.rpginventory.storage.CompressionCodec;
 import ru.endlesscode.rpginventory.utils.ItemUtils;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.*;
 
 /**
  * Created by OsipXD on 20.11.2015
@@ -41,48 +37,131 @@ import java.util.zip.GZIPOutputStream;
  * All rights reserved 2014 - 2016 © «EndlessCode Group»
  */
 class BackpackSerializer {
-    static void saveBackpack(@NotNull Backpack backpack, @NotNull File file) throws IOException {
-        List<NbtCompound> nbtList = new ArrayList<>();
-
-        try (DataOutputStream dataOutput = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(file)))) {
-            ItemStack[] contents = backpack.getContents();
-            for (int i = 0; i < contents.length; i++) {
-                ItemStack item = contents[i];
-                nbtList.add(ItemUtils.itemStackToNBT(ItemUtils.isEmpty(item) ? new ItemStack(Material.AIR) : item, i + ""));
+    /**
+     * Returns backpack data in the format it is stored in storage.
+     * Can be called from any thread, it takes snapshot of backpack.
+     */
+    @NotNull
+    static byte[] serializeBackpack(@NotNull CompactFormat.BodyWriter snapshot) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CompactFormat.write(output, CompactFormat.BACKPACK, snapshot);
+        return output.toByteArray();
+    }
+
+    /**
+     * Converts items to NBT, so snapshot doesn't depend on backpack.
+     * Should be called from the main thread.
+     */
+    @NotNull
+    static CompactFormat.BodyWriter snapshotBackpack(@NotNull final String type, @NotNull ItemStack[] contents, final long lastUse) {
+        final Map<Integer, NbtCompound> items = new LinkedHashMap<>();
+        final CompactFormat.MaterialDictionary dictionary = new CompactFormat.MaterialDictionary();
+        for (int i = 0; i < contents.length; i++) {
+            ItemStack item = contents[i];
+            if (!ItemUtils.isEmpty(item)) {
+                NbtCompound itemNbt = ItemUtils.itemStackToNBT(item, i + "");
+                dictionary.add(itemNbt);
+                items.put(i, itemNbt);
+            }
+        }
+
+        return new CompactFormat.BodyWriter() {
+            @Override
+            public void write(@NotNull DataOutputStream output) throws IOException {
+                output.writeUTF(type);
+                output.writeLong(lastUse);
+                dictionary.write(output);
+                CompactFormat.writeVarInt(output, items.size());
+                for (Map.Entry<Integer, NbtCompound> item : items.entrySet()) {
+                    CompactFormat.writeItem(output, dictionary, item.getKey(), item.getValue());
+                }
             }
+        };
+    }
 
-            NbtCompound backpackNbt = NbtFactory.ofCompound("Backpack");
-            backpackNbt.put(NbtFactory.ofCompound("contents", nbtList));
-            backpackNbt.put("type", backpack.getType().getId());
-            backpackNbt.put("last-use", backpack.getLastUse());
-            NbtBinarySerializer.DEFAULT.serialize(backpackNbt, dataOutput);
+    /**
+     * Reads last use of stored backpack, items aren't read.
+     * Can be called from any thread.
+     *
+     * @return Last use or null if backpack has unknown type and should be removed
+     */
+    @Nullable
+    static Long readLastUse(@NotNull byte[] data) throws IOException {
+        try (InputStream input = new ByteArrayInputStream(data)) {
+            CompressionCodec codec = CompactFormat.readHeader(input, CompactFormat.BACKPACK);
+            try (DataInputStream dataInput = CompactFormat.openBody(input, codec)) {
+                if (codec != null) {
+                    return BackpackManager.getBackpackType(dataInput.readUTF()) == null ? null : dataInput.readLong();
+                }
+
+                NbtCompound nbtList = NbtBinarySerializer.DEFAULT.deserializeCompound(dataInput);
+                if (BackpackManager.getBackpackType(nbtList.getString("type")) == null) {
+                    return null;
+                }
+
+                // Old backpacks without last use never expire
+                return nbtList.containsKey("last-use") ? nbtList.getLong("last-use") : Long.MAX_VALUE;
+            }
         }
     }
 
     @Nullable
-    static Backpack loadBackpack(@NotNull File file) throws IOException {
-        Backpack backpack;
-        try (DataInputStream dataInput = new DataInputStream(new GZIPInputStream(new FileInputStream(file)))) {
-            NbtCompound nbtList = NbtBinarySerializer.DEFAULT.deserializeCompound(dataInput);
-
-            BackpackType type = BackpackManager.getBackpackType(nbtList.getString("type"));
-            if (type == null) {
-                return null;
+    static Backpack loadBackpack(@NotNull byte[] data, @NotNull UUID id) throws IOException {
+        try (InputStream input = new ByteArrayInputStream(data)) {
+            CompressionCodec codec = CompactFormat.readHeader(input, CompactFormat.BACKPACK);
+            try (DataInputStream dataInput = CompactFormat.openBody(input, codec)) {
+                return codec == null ? readLegacyBackpack(dataInput, id) : readCompactBackpack(dataInput, id);
             }
+        }
+    }
 
-            long lastUse = (nbtList.containsKey("last-use")) ? nbtList.getLong("last-use") : System.currentTimeMillis();
-            backpack = new Backpack(type, UUID.fromString(FileUtils.stripExtension(file.getName())));
-            backpack.setLastUse(lastUse);
-            NbtCompound itemList = nbtList.getCompound("contents");
-            ItemStack[] contents = new ItemStack[type.getSize()];
-            for (int i = 0; i < type.getSize() && itemList.containsKey(i + ""); i++) {
-                NbtCompound compound = itemList.getCompound(i + "");
-                contents[i] = compound == null ? new ItemStack(Material.AIR) : ItemUtils.nbtToItemStack(compound);
+    @Nullable
+    private static Backpack readCompactBackpack(@NotNull DataInputStream dataInput, @NotNull UUID id) throws IOException {
+        BackpackType type = BackpackManager.getBackpackType(dataInput.readUTF());
+        if (type == null) {
+            return null;
+        }
+
+        Backpack backpack = new Backpack(type, id);
+        backpack.setLastUse(dataInput.readLong());
+
+        List<String> dictionary = CompactFormat.readDictionary(dataInput);
+        ItemStack[] contents = new ItemStack[type.getSize()];
+        int itemCount = CompactFormat.readVarInt(dataInput);
+        for (int i = 0; i < itemCount; i++) {
+            NbtCompound item = CompactFormat.readItem(dataInput, dictionary);
+            int index = Integer.parseInt(item.getName());
+            if (index < contents.length) {
+                contents[index] = ItemUtils.nbtToItemStack(item);
             }
+        }
+
+        backpack.setContents(contents);
+        backpack.setModified(false);
+        return backpack;
+    }
+
+    @Nullable
+    private static Backpack readLegacyBackpack(@NotNull DataInputStream dataInput, @NotNull UUID id) throws IOException {
+        NbtCompound nbtList = NbtBinarySerializer.DEFAULT.deserializeCompound(dataInput);
+
+        BackpackType type = BackpackManager.getBackpackType(nbtList.getString("type"));
+        if (type == null) {
+            return null;
+        }
 
-            backpack.setContents(contents);
+        long lastUse = (nbtList.containsKey("last-use")) ? nbtList.getLong("last-use") : System.currentTimeMillis();
+        Backpack backpack = new Backpack(type, id);
+        backpack.setLastUse(lastUse);
+        NbtCompound itemList = nbtList.getCompound("contents");
+        ItemStack[] contents = new ItemStack[type.getSize()];
+        for (int i = 0; i < type.getSize() && itemList.containsKey(i + ""); i++) {
+            NbtCompound compound = itemList.getCompound(i + "");
+            contents[i] = compound == null ? new ItemStack(Material.AIR) : ItemUtils.nbtToItemStack(compound);
         }
 
+        backpack.setContents(contents);
+        backpack.setModified(false);
         return backpack;
     }
 }
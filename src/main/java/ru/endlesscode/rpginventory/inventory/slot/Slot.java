@@ -28,12 +28,15 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import ru.endlesscode.rpginventory.RPGInventory;
 import ru.endlesscode.rpginventory.utils.InventoryUtils;
+import ru.endlesscode.rpginventory.utils.ItemClassifier;
 import ru.endlesscode.rpginventory.utils.ItemUtils;
 import ru.endlesscode.rpginventory.utils.StringUtils;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by OsipXD on 05.09.2015
@@ -44,11 +47,12 @@ public class Slot {
     private final String name;
     private final SlotType slotType;
 
-    private final List<String> allowed = new ArrayList<>();
-    private final List<String> denied = new ArrayList<>();
+    private final ItemList allowed = new ItemList();
+    private final ItemList denied = new ItemList();
 
     private final List<Integer> slotIds;
     private final ItemStack cup;
+    private final ItemStack legacyCup;
     private final int requiredLevel;
     private final int cost;
     private final int quickSlot;
@@ -78,9 +82,9 @@ public class Slot {
         if (slotType.isReadItemList()) {
             for (String item : config.getStringList("items")) {
                 if (item.startsWith("-")) {
-                    this.denied.add(item.substring(1));
+                    this.denied.add(name, item.substring(1));
                 } else {
-                    this.allowed.add(item);
+                    this.allowed.add(name, item);
                 }
             }
         } else {
@@ -89,78 +93,49 @@ public class Slot {
             }
 
             if (slotType == SlotType.ELYTRA) {
-                this.allowed.add("ELYTRA");
+                this.allowed.add(name, "ELYTRA");
             }
         }
 
         // Setup cup slot
         if (config.contains("holder.item")) {
             String texture = config.getString("holder.item");
+            ItemStack cup;
             if (texture.startsWith("LEATHER_")) {
-                this.cup = ItemUtils.getTexturedItem(StringUtils.coloredLine(texture.split(":")[0]));
+                cup = ItemUtils.getTexturedItem(StringUtils.coloredLine(texture.split(":")[0]));
                 LeatherArmorMeta meta = (LeatherArmorMeta) cup.getItemMeta();
                 meta.setColor(Color.fromRGB(Integer.parseInt(texture.split(":")[1], 16)));
-                this.cup.setItemMeta(meta);
+                cup.setItemMeta(meta);
             } else {
-                this.cup = ItemUtils.getTexturedItem(StringUtils.coloredLine(config.getString("holder.item")));
+                cup = ItemUtils.getTexturedItem(StringUtils.coloredLine(config.getString("holder.item")));
             }
 
-            ItemMeta meta = this.cup.getItemMeta();
+            ItemMeta meta = cup.getItemMeta();
             meta.setDisplayName(config.contains("holder.name") ? StringUtils.coloredLine(config.getString("holder.name")) : "[Holder name missing]");
             meta.setLore(config.contains("holder.lore") ? StringUtils.coloredLines(config.getStringList("holder.lore")) : Collections.singletonList("[Holder lore missing]"));
-            this.cup.setItemMeta(meta);
+            cup.setItemMeta(meta);
+
+            this.legacyCup = cup.clone();
+            this.cup = ItemUtils.isEmpty(cup) ? cup : ItemUtils.setTag(cup, ItemUtils.HOLDER_TAG, name);
         } else {
             this.cup = new ItemStack(Material.AIR);
+            this.legacyCup = this.cup;
         }
     }
 
-    private static boolean searchItem(List<String> materialList, @NotNull ItemStack itemStack) {
-        for (String material : materialList) {
-            String[] data = material.split(":");
-
-            if (material.equals("ALL")) {
-                return true;
-            }
-
-            if (!itemStack.getType().name().equals(data[0])) {
-                continue;
-            }
-
-            if (data.length > 1) {
-                String[] borders = data[1].split("-");
-                int itemDurability = itemStack.getDurability();
-
-                if (borders.length == 1 && itemDurability != Integer.parseInt(data[1])) {
-                    continue;
-                } else if (borders.length == 2) {
-                    int min = Integer.parseInt(borders[0]);
-                    int max = Integer.parseInt(borders[1]);
-
-                    if (min > max) {
-                        min *= max;
-                        max = min/max;
-                        min /= max;
-                    }
-
-                    if (itemDurability < min || itemDurability > max) {
-                        continue;
-                    }
-                }
-            }
-
-            return true;
-        }
-
-        return false;
-    }
-
     @NotNull
     public ItemStack getCup() {
         return this.cup.clone();
     }
 
     public boolean isCup(ItemStack itemStack) {
-        return this.cup.equals(itemStack);
+        ItemClassifier.Descriptor descriptor = ItemClassifier.classify(itemStack);
+        if (descriptor.is(ItemClassifier.Kind.HOLDER)) {
+            return this.name.equals(descriptor.getId());
+        }
+
+        // Holders created before they were marked with tag
+        return descriptor.is(ItemClassifier.Kind.NONE) && this.legacyCup.equals(itemStack);
     }
 
     boolean containsSlot(int slot) {
@@ -180,11 +155,11 @@ public class Slot {
     }
 
     private boolean isDenied(@NotNull ItemStack item) {
-        return searchItem(this.denied, item);
+        return this.denied.contains(item);
     }
 
     private boolean isAllowed(@NotNull ItemStack item) {
-        return searchItem(this.allowed, item);
+        return this.allowed.contains(item);
     }
 
     public SlotType getSlotType() {
@@ -224,6 +199,83 @@ public class Slot {
         return drop;
     }
 
+    /**
+     * List of items in format "MATERIAL[:durability[-durability]]" or "ALL".
+     * Rules are parsed once, so check of item is a lookup by material.
+     */
+    private static class ItemList {
+        private static final int[] ANY_DURABILITY = {Integer.MIN_VALUE, Integer.MAX_VALUE};
+
+        private final Map<Material, int[]> ranges = new EnumMap<>(Material.class);
+        private boolean all = false;
+
+        void add(String slotName, @NotNull String rule) {
+            if (rule.equals("ALL")) {
+                this.all = true;
+                return;
+            }
+
+            String[] data = rule.split(":");
+            Material material = Material.getMaterial(data[0]);
+            if (material == null) {
+                RPGInventory.getPluginLogger().warning("Unknown material " + data[0] + " in items of slot \"" + slotName + "\"");
+                return;
+            }
+
+            int[] range = ANY_DURABILITY;
+            if (data.length > 1) {
+                String[] borders = data[1].split("-");
+                try {
+                    if (borders.length == 1) {
+                        int durability = Integer.parseInt(borders[0]);
+                        range = new int[]{durability, durability};
+                    } else if (borders.length == 2) {
+                        int min = Integer.parseInt(borders[0]);
+                        int max = Integer.parseInt(borders[1]);
+                        range = new int[]{Math.min(min, max), Math.max(min, max)};
+                    }
+                } catch (NumberFormatException e) {
+                    RPGInventory.getPluginLogger().warning("Wrong durability " + data[1] + " in items of slot \"" + slotName + "\"");
+                    return;
+                }
+            }
+
+            int[] oldRanges = this.ranges.get(material);
+            if (oldRanges == null) {
+                this.ranges.put(material, range);
+            } else {
+                int[] newRanges = Arrays.copyOf(oldRanges, oldRanges.length + 2);
+                newRanges[oldRanges.length] = range[0];
+                newRanges[oldRanges.length + 1] = range[1];
+                this.ranges.put(material, newRanges);
+            }
+        }
+
+        boolean contains(@NotNull ItemStack item) {
+            if (this.all) {
+                return true;
+            }
+
+            int[] ranges = this.ranges.get(item.getType());
+            if (ranges == null) {
+                return false;
+            }
+
+            int durability = item.getDurability();
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (durability >= ranges[i] && durability <= ranges[i + 1]) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        boolean isEmpty() {
+            return !this.all && this.ranges.isEmpty();
+        }
+    }
+
     @SuppressWarnings("unused")
     public enum SlotType {
         GENERIC(true, true, false, true),
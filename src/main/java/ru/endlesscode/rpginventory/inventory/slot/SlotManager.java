@@ -28,8 +28,7 @@ import ru.endlesscode.rpginventory.RPGInventory;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
  * Created by OsipXD on 05.09.2015
@@ -42,6 +41,18 @@ public class SlotManager {
 
     private final List<Slot> slots = new ArrayList<>();
 
+    // Index is built once after loading, so lookups don't iterate slots
+    private final Slot[] containerSlots;
+    private final Slot[] quickbarSlots;
+    private final Slot[] quickSlotsByQuickbar;
+    private final Map<String, Slot> slotsByName = new HashMap<>();
+    private final Map<Slot.SlotType, Slot> slotsByType = new EnumMap<>(Slot.SlotType.class);
+    private final List<Slot> quickSlots;
+    private final List<Slot> passiveSlots;
+    private final List<Slot> activeSlots;
+    private final List<Slot> armorSlots;
+    private final List<Slot> infoSlots;
+
     private final File slotsFile;
     private final FileConfiguration slotsConfig;
 
@@ -69,6 +80,79 @@ public class SlotManager {
                 RPGInventory.getPluginLogger().warning("Slot " + slot.getName() + " not been added.");
             }
         }
+
+        int containerSize = 0;
+        int quickbarSize = 0;
+        for (Slot slot : this.slots) {
+            for (int slotId : slot.getSlotIds()) {
+                containerSize = Math.max(containerSize, slotId + 1);
+            }
+
+            quickbarSize = Math.max(quickbarSize, slot.getQuickSlot() + 1);
+        }
+
+        this.containerSlots = new Slot[containerSize];
+        this.quickbarSlots = new Slot[quickbarSize];
+        this.quickSlotsByQuickbar = new Slot[quickbarSize];
+        List<Slot> quickSlots = new ArrayList<>();
+        List<Slot> passiveSlots = new ArrayList<>();
+        List<Slot> activeSlots = new ArrayList<>();
+        List<Slot> armorSlots = new ArrayList<>(4);
+        List<Slot> infoSlots = new ArrayList<>();
+        for (Slot slot : this.slots) {
+            for (int slotId : slot.getSlotIds()) {
+                if (slotId >= 0) {
+                    this.containerSlots[slotId] = slot;
+                }
+            }
+
+            // The first slot wins, as it did when slots were searched one by one
+            int quickSlot = slot.getQuickSlot();
+            if ((slot.isQuick() || slot.getSlotType() == Slot.SlotType.SHIELD) && quickSlot >= 0
+                    && this.quickbarSlots[quickSlot] == null) {
+                this.quickbarSlots[quickSlot] = slot;
+            }
+
+            if (slot.isQuick() && quickSlot >= 0 && this.quickSlotsByQuickbar[quickSlot] == null) {
+                this.quickSlotsByQuickbar[quickSlot] = slot;
+            }
+
+            String name = slot.getName().toLowerCase();
+            if (!this.slotsByName.containsKey(name)) {
+                this.slotsByName.put(name, slot);
+            }
+
+            if (!this.slotsByType.containsKey(slot.getSlotType())) {
+                this.slotsByType.put(slot.getSlotType(), slot);
+            }
+
+            if (slot.isQuick()) {
+                quickSlots.add(slot);
+            }
+
+            switch (slot.getSlotType()) {
+                case PASSIVE:
+                case BACKPACK:
+                case ELYTRA:
+                    passiveSlots.add(slot);
+                    break;
+                case ACTIVE:
+                    activeSlots.add(slot);
+                    break;
+                case ARMOR:
+                    armorSlots.add(slot);
+                    break;
+                case INFO:
+                    infoSlots.add(slot);
+                    break;
+            }
+        }
+
+        this.quickSlots = Collections.unmodifiableList(quickSlots);
+        this.passiveSlots = Collections.unmodifiableList(passiveSlots);
+        this.activeSlots = Collections.unmodifiableList(activeSlots);
+        this.armorSlots = Collections.unmodifiableList(armorSlots);
+        this.infoSlots = Collections.unmodifiableList(infoSlots);
     }
 
     public static boolean init() {
@@ -133,83 +217,41 @@ public class SlotManager {
 
     @Nullable
     public Slot getSlot(String name) {
-        for (Slot slot : this.slots) {
-            if (slot.getName().equalsIgnoreCase(name)) {
-                return slot;
-            }
-        }
-
-        return null;
+        return name == null ? null : this.slotsByName.get(name.toLowerCase());
     }
 
     @Nullable
     public Slot getSlot(int slotId, InventoryType.SlotType slotType) {
-        for (Slot slot : this.slots) {
-            if (slotType == InventoryType.SlotType.QUICKBAR) {
-                if ((slot.isQuick() || slot.getSlotType() == Slot.SlotType.SHIELD) && slot.getQuickSlot() == slotId) {
-                    return slot;
-                }
-            } else if (slot.containsSlot(slotId)) {
-                return slot;
-            }
-        }
+        Slot[] index = slotType == InventoryType.SlotType.QUICKBAR ? this.quickbarSlots : this.containerSlots;
+        return slotId >= 0 && slotId < index.length ? index[slotId] : null;
+    }
 
-        return null;
+    /**
+     * Returns quick slot placed at given quickbar slot
+     */
+    @Nullable
+    public Slot getQuickSlot(int quickSlot) {
+        return quickSlot >= 0 && quickSlot < this.quickSlotsByQuickbar.length ? this.quickSlotsByQuickbar[quickSlot] : null;
     }
 
     public List<Slot> getQuickSlots() {
-        List<Slot> quickSlots = new ArrayList<>();
-        for (Slot slot : this.slots) {
-            if (slot.isQuick()) {
-                quickSlots.add(slot);
-            }
-        }
-
-        return quickSlots;
+        return this.quickSlots;
     }
 
     public List<Slot> getPassiveSlots() {
-        List<Slot> passiveSlots = new ArrayList<>();
-        for (Slot slot : this.slots) {
-            if (slot.getSlotType() == Slot.SlotType.PASSIVE || slot.getSlotType() == Slot.SlotType.BACKPACK || slot.getSlotType() == Slot.SlotType.ELYTRA) {
-                passiveSlots.add(slot);
-            }
-        }
-
-        return passiveSlots;
+        return this.passiveSlots;
     }
 
     public List<Slot> getActiveSlots() {
-        List<Slot> activeSlots = new ArrayList<>();
-        for (Slot slot : this.slots) {
-            if (slot.getSlotType() == Slot.SlotType.ACTIVE) {
-                activeSlots.add(slot);
-            }
-        }
-
-        return activeSlots;
+        return this.activeSlots;
     }
 
     public List<Slot> getArmorSlots() {
-        List<Slot> armorSlots = new ArrayList<>(4);
-        for (Slot slot : this.slots) {
-            if (slot.getSlotType() == Slot.SlotType.ARMOR) {
-                armorSlots.add(slot);
-            }
-        }
-
-        return armorSlots;
+        return this.armorSlots;
     }
 
     public List<Slot> getInfoSlots() {
-        List<Slot> infoSlots = new ArrayList<>();
-        for (Slot slot : this.slots) {
-            if (slot.getSlotType() == Slot.SlotType.INFO) {
-                infoSlots.add(slot);
-            }
-        }
-
-        return infoSlots;
+        return this.infoSlots;
     }
 
     public List<Slot> getSlots() {
@@ -218,46 +260,27 @@ public class SlotManager {
 
     @Nullable
     public Slot getPetSlot() {
-        for (Slot slot : this.slots) {
-            if (slot.getSlotType() == Slot.SlotType.PET) {
-                return slot;
-            }
-        }
-
-        return null;
+        return this.slotsByType.get(Slot.SlotType.PET);
     }
 
     @Nullable
     public Slot getShieldSlot() {
-        for (Slot slot : this.slots) {
-            if (slot.getSlotType() == Slot.SlotType.SHIELD) {
-                return slot;
-            }
-        }
-
-        return null;
+        return this.slotsByType.get(Slot.SlotType.SHIELD);
     }
 
     @Nullable
     public Slot getBackpackSlot() {
-        for (Slot slot : this.slots) {
-            if (slot.getSlotType() == Slot.SlotType.BACKPACK) {
-                return slot;
-            }
-        }
-
-        return null;
+        return this.slotsByType.get(Slot.SlotType.BACKPACK);
     }
 
     @Nullable
     public Slot getElytraSlot() {
-        for (Slot slot : this.slots) {
-            if (slot.getSlotType() == Slot.SlotType.ELYTRA) {
-                return slot;
-            }
-        }
+        return this.slotsByType.get(Slot.SlotType.ELYTRA);
+    }
 
-        return null;
+    @Nullable
+    public Slot getMyPetSlot() {
+        return this.slotsByType.get(Slot.SlotType.MYPET);
     }
 
     public void saveDefaults() {
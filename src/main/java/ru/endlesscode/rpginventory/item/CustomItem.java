@@ -26,6 +26,7 @@ import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import ru.endlesscode.rpginventory.inventory.InventoryManager;
+import ru.endlesscode.rpginventory.utils.ItemClassifier;
 import ru.endlesscode.rpginventory.utils.ItemUtils;
 import ru.endlesscode.rpginventory.utils.StringUtils;
 
@@ -88,7 +89,7 @@ public class CustomItem extends ClassedItem {
 
     @Contract("null -> false")
     public static boolean isCustomItem(ItemStack itemStack) {
-        return !ItemUtils.isEmpty(itemStack) && ItemUtils.hasTag(itemStack, ItemUtils.ITEM_TAG);
+        return ItemClassifier.classify(itemStack).is(ItemClassifier.Kind.CUSTOM_ITEM);
     }
 
     public void onEquip(Player player) {
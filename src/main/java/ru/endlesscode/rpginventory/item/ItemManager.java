@@ -22,18 +22,18 @@ import org.bukkit.Material;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventPriority;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import ru.endlesscode.rpginventory.RPGInventory;
-import ru.endlesscode.rpginventory.api.InventoryAPI;
+import ru.endlesscode.rpginventory.event.listener.ClickDispatcher;
 import ru.endlesscode.rpginventory.event.listener.ItemListener;
 import ru.endlesscode.rpginventory.inventory.InventoryManager;
+import ru.endlesscode.rpginventory.inventory.PlayerWrapper;
 import ru.endlesscode.rpginventory.misc.Config;
 import ru.endlesscode.rpginventory.misc.FileLanguage;
-import ru.endlesscode.rpginventory.pet.PetManager;
-import ru.endlesscode.rpginventory.pet.PetType;
-import ru.endlesscode.rpginventory.utils.ItemUtils;
+import ru.endlesscode.rpginventory.utils.ItemClassifier;
 import ru.endlesscode.rpginventory.utils.PlayerUtils;
 import ru.endlesscode.rpginventory.utils.StringUtils;
 
@@ -67,6 +67,7 @@ public class ItemManager {
                 CustomItem customItem = new CustomItem(key, itemsConfig.getConfigurationSection("items." + key));
                 CUSTOM_ITEMS.put(key, customItem);
             }
+            ItemClassifier.clearCache();
 
             RPGInventory.getPluginLogger().info(CUSTOM_ITEMS.size() + " item(s) has been loaded");
         } catch (Exception e) {
@@ -78,61 +79,21 @@ public class ItemManager {
             return false;
         }
 
-        instance.getServer().getPluginManager().registerEvents(new ItemListener(), instance);
+        ItemListener itemListener = new ItemListener();
+        instance.getServer().getPluginManager().registerEvents(itemListener, instance);
+        ClickDispatcher.register(EventPriority.MONITOR, itemListener);
         return true;
     }
 
+    /**
+     * Returns bonus of equipped items. Bonuses of loaded players are cached,
+     * so it is cheap to call it on every event.
+     */
+    @NotNull
     public static Modifier getModifier(@NotNull Player player, ItemStat.StatType statType) {
-        return getModifier(player, statType, false);
-    }
-
-    private static Modifier getModifier(@NotNull Player player, ItemStat.StatType statType, boolean notifyPlayer) {
-        double minBonus = 0;
-        double maxBonus = 0;
-        float minMultiplier = 1;
-        float maxMultiplier = 1;
-
-        List<ItemStack> items = new ArrayList<>(InventoryAPI.getPassiveItems(player));
-        Collections.addAll(items, player.getInventory().getArmorContents());
-
-        ItemStack itemInHand = player.getEquipment().getItemInMainHand();
-        if (CustomItem.isCustomItem(itemInHand) && ItemManager.allowedForPlayer(player, itemInHand, notifyPlayer)) {
-            items.add(itemInHand);
-        }
-
-        itemInHand = player.getEquipment().getItemInOffHand();
-        if (CustomItem.isCustomItem(itemInHand) && ItemManager.allowedForPlayer(player, itemInHand, notifyPlayer)) {
-            items.add(itemInHand);
-        }
-
-        for (ItemStack item : items) {
-            CustomItem customItem;
-            ItemStat stat;
-            if (!CustomItem.isCustomItem(item) || (customItem = ItemManager.getCustomItem(item)) == null
-                    || (stat = customItem.getStat(statType)) == null) {
-                continue;
-            }
-
-            if (stat.isPercentage()) {
-                minMultiplier += stat.getOperationType() == ItemStat.OperationType.MINUS ? -stat.getMinValue()/100 : stat.getMinValue()/100;
-
-                if (stat.isRanged()) {
-                    maxMultiplier += stat.getOperationType() == ItemStat.OperationType.MINUS ? -stat.getMaxValue()/100 : stat.getMaxValue()/100;
-                } else {
-                    maxMultiplier += stat.getOperationType() == ItemStat.OperationType.MINUS ? -stat.getMinValue()/100 : stat.getMinValue()/100;
-                }
-            } else {
-                minBonus += stat.getOperationType() == ItemStat.OperationType.MINUS ? -stat.getMinValue() : stat.getMinValue();
-
-                if (stat.isRanged()) {
-                    maxBonus += stat.getOperationType() == ItemStat.OperationType.MINUS ? -stat.getMaxValue() : stat.getMaxValue();
-                } else {
-                    maxBonus += stat.getOperationType() == ItemStat.OperationType.MINUS ? -stat.getMinValue() : stat.getMinValue();
-                }
-            }
-        }
-
-        return new Modifier(minBonus, maxBonus, minMultiplier, maxMultiplier);
+        PlayerWrapper playerWrapper = InventoryManager.get(player);
+        StatVector stats = playerWrapper == null ? new StatVector() : playerWrapper.getStats();
+        return stats.getModifier(player, statType);
     }
 
     public static List<String> getItemList() {
@@ -148,15 +109,21 @@ public class ItemManager {
 
     @Nullable
     public static CustomItem getCustomItem(@NotNull ItemStack item) {
-        return CUSTOM_ITEMS.get(ItemUtils.getTag(item, ItemUtils.ITEM_TAG));
+        return ItemClassifier.classify(item).getCustomItem();
+    }
+
+    @Nullable
+    public static CustomItem getCustomItem(String itemId) {
+        return CUSTOM_ITEMS.get(itemId);
     }
 
     public static boolean allowedForPlayer(@NotNull Player player, @NotNull ItemStack item, boolean notifyPlayer) {
+        ItemClassifier.Descriptor descriptor = ItemClassifier.classify(item);
         ClassedItem classedItem;
-        if (CustomItem.isCustomItem(item)) {
-            classedItem = ItemManager.getCustomItem(item);
-        } else if (PetType.isPetItem(item)) {
-            classedItem = PetManager.getPetFromItem(item);
+        if (descriptor.is(ItemClassifier.Kind.CUSTOM_ITEM)) {
+            classedItem = descriptor.getCustomItem();
+        } else if (descriptor.is(ItemClassifier.Kind.PET)) {
+            classedItem = descriptor.getPetType();
         } else {
             return true;
         }
@@ -0,0 +1,127 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.item;
+
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import ru.endlesscode.rpginventory.api.InventoryAPI;
+
+import java.util.Arrays;
+
+/**
+ * Bonuses of all stat types given by equipped items.
+ * <p>
+ * Bonuses are calculated for all types at once in one pass over items
+ * and stay cached until equipment will be changed.
+ */
+public class StatVector {
+    private static final ItemStat.StatType[] TYPES = ItemStat.StatType.values();
+
+    private static final int MIN_BONUS = 0;
+    private static final int MAX_BONUS = 1;
+    private static final int MIN_MULTIPLIER = 2;
+    private static final int MAX_MULTIPLIER = 3;
+    private static final int FIELDS = 4;
+
+    private final double[] values = new double[TYPES.length*FIELDS];
+    private final Modifier[] modifiers = new Modifier[TYPES.length];
+    private boolean valid = false;
+
+    /**
+     * Marks bonuses as outdated, they will be recalculated on next request
+     */
+    public void invalidate() {
+        this.valid = false;
+    }
+
+    @NotNull
+    Modifier getModifier(@NotNull Player player, @NotNull ItemStat.StatType statType) {
+        if (!this.valid) {
+            this.recalculate(player);
+        }
+
+        return this.modifiers[statType.ordinal()];
+    }
+
+    /**
+     * Checks that equipped items change given stat, it is cheap check for hot events
+     */
+    public boolean hasModifier(@NotNull Player player, @NotNull ItemStat.StatType statType) {
+        return this.getModifier(player, statType) != Modifier.EMPTY;
+    }
+
+    private void recalculate(@NotNull Player player) {
+        for (int i = 0; i < TYPES.length; i++) {
+            this.values[i*FIELDS + MIN_BONUS] = 0;
+            this.values[i*FIELDS + MAX_BONUS] = 0;
+            this.values[i*FIELDS + MIN_MULTIPLIER] = 1;
+            this.values[i*FIELDS + MAX_MULTIPLIER] = 1;
+        }
+
+        for (ItemStack item : InventoryAPI.getPassiveItems(player)) {
+            this.addItem(item);
+        }
+
+        for (ItemStack item : player.getInventory().getArmorContents()) {
+            this.addItem(item);
+        }
+
+        for (ItemStack item : Arrays.asList(player.getEquipment().getItemInMainHand(), player.getEquipment().getItemInOffHand())) {
+            if (CustomItem.isCustomItem(item) && ItemManager.allowedForPlayer(player, item, false)) {
+                this.addItem(item);
+            }
+        }
+
+        for (int i = 0; i < TYPES.length; i++) {
+            if (this.values[i*FIELDS + MIN_BONUS] == 0 && this.values[i*FIELDS + MAX_BONUS] == 0
+                    && this.values[i*FIELDS + MIN_MULTIPLIER] == 1 && this.values[i*FIELDS + MAX_MULTIPLIER] == 1) {
+                this.modifiers[i] = Modifier.EMPTY;
+                continue;
+            }
+
+            this.modifiers[i] = new Modifier(this.values[i*FIELDS + MIN_BONUS], this.values[i*FIELDS + MAX_BONUS],
+                    this.values[i*FIELDS + MIN_MULTIPLIER], this.values[i*FIELDS + MAX_MULTIPLIER]);
+        }
+
+        this.valid = true;
+    }
+
+    private void addItem(ItemStack item) {
+        CustomItem customItem;
+        if (!CustomItem.isCustomItem(item) || (customItem = ItemManager.getCustomItem(item)) == null) {
+            return;
+        }
+
+        for (ItemStat stat : customItem.getStats()) {
+            double sign = stat.getOperationType() == ItemStat.OperationType.MINUS ? -1 : 1;
+            double minValue = sign*stat.getMinValue();
+            double maxValue = stat.isRanged() ? sign*stat.getMaxValue() : minValue;
+
+            int offset = stat.getType().ordinal()*FIELDS;
+            if (stat.isPercentage()) {
+                this.values[offset + MIN_MULTIPLIER] += minValue/100;
+                this.values[offset + MAX_MULTIPLIER] += maxValue/100;
+            } else {
+                this.values[offset + MIN_BONUS] += minValue;
+                this.values[offset + MAX_BONUS] += maxValue;
+            }
+        }
+    }
+}
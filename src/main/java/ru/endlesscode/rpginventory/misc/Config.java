@@ -31,6 +31,7 @@ import java.nio.file.StandardCopyOption;
 
 public class Config {
     private static FileConfiguration config;
+    private static volatile Settings settings;
     private static File configFile;
 
     public static void loadConfig(@NotNull Plugin plugin) {
@@ -47,14 +48,24 @@ public class Config {
 
         plugin.reloadConfig();
         Config.config = plugin.getConfig();
+        Config.settings = new Settings(Config.config);
     }
 
     public static FileConfiguration getConfig() {
         return Config.config;
     }
 
+    /**
+     * Returns typed snapshot of options used on hot paths. It is replaced as a whole on reload.
+     */
+    @NotNull
+    public static Settings getSettings() {
+        return Config.settings;
+    }
+
     public static void reload() {
         Config.config = YamlConfiguration.loadConfiguration(configFile);
+        Config.settings = new Settings(Config.config);
     }
 
     public static void save() {
@@ -0,0 +1,97 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.misc;
+
+import org.jetbrains.annotations.NotNull;
+import ru.endlesscode.rpginventory.RPGInventory;
+
+import java.util.concurrent.*;
+
+/**
+ * Background executor for writing of inventories and backpacks to disk.
+ * <p>
+ * It has only one thread, so tasks are executed in order of submission and
+ * later save of the same file never overtakes the earlier one. The queue is bounded,
+ * if it is full the main thread waits for a free place instead of running the task itself.
+ */
+public class SaveExecutor {
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private static ThreadPoolExecutor executor = null;
+
+    private SaveExecutor() {
+    }
+
+    public static void init() {
+        if (executor != null && !executor.isShutdown()) {
+            return;
+        }
+
+        executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(QUEUE_CAPACITY), new ThreadFactory() {
+            @Override
+            public Thread newThread(@NotNull Runnable runnable) {
+                return new Thread(runnable, "RPGInventory Saver");
+            }
+        }, new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+                if (executor.isShutdown()) {
+                    task.run();
+                    return;
+                }
+
+                try {
+                    executor.getQueue().put(task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    task.run();
+                }
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static void execute(@NotNull Runnable task) {
+        if (executor == null || executor.isShutdown()) {
+            task.run();
+            return;
+        }
+
+        executor.execute(task);
+    }
+
+    /**
+     * Waits until all submitted tasks will be finished and stops executor
+     */
+    public static void shutdown() {
+        if (executor == null) {
+            return;
+        }
+
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+                RPGInventory.getPluginLogger().warning("Not all inventories was saved in 60 seconds!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.misc;
+
+import org.bukkit.World;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.jetbrains.annotations.NotNull;
+import ru.endlesscode.rpginventory.RPGInventory;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Typed options of config.yml that are used on hot paths.
+ * Snapshot is immutable and compiled once on (re)loading of config, see {@link Config#getSettings()}.
+ */
+public final class Settings {
+    private final boolean worldsWhitelist;
+    private final Set<String> worlds;
+
+    private final boolean forceWeapon;
+    private final boolean requireWeapon;
+    private final boolean autoHeld;
+    private final boolean attackOwnPet;
+
+    private final double baseHealth;
+    private final boolean scaleHealth;
+    private final int hearts;
+    private final double minInHeart;
+    private final double maxInHeart;
+
+    Settings(@NotNull FileConfiguration config) {
+        String mode = config.getString("worlds.mode", ListType.BLACKLIST.name());
+        ListType listType;
+        try {
+            listType = ListType.valueOf(mode.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            RPGInventory.getPluginLogger().warning("Unknown worlds mode: " + mode + ", BLACKLIST will be used");
+            listType = ListType.BLACKLIST;
+        }
+        this.worldsWhitelist = listType == ListType.WHITELIST;
+        this.worlds = new HashSet<>(config.getStringList("worlds.list"));
+
+        this.forceWeapon = config.getBoolean("attack.force-weapon");
+        this.requireWeapon = config.getBoolean("attack.require-weapon");
+        this.autoHeld = config.getBoolean("attack.auto-held");
+        this.attackOwnPet = config.getBoolean("attack.own-pet");
+
+        this.baseHealth = config.getDouble("health.base", 20.0D);
+        this.scaleHealth = config.getBoolean("health.scale", false);
+        this.hearts = config.getInt("health.hearts", 20);
+        this.minInHeart = config.getDouble("health.heart-value.min", 1);
+        this.maxInHeart = config.getDouble("health.heart-value.max", 5);
+    }
+
+    public boolean isAllowedWorld(@NotNull World world) {
+        return this.worlds.contains(world.getName()) == this.worldsWhitelist;
+    }
+
+    public boolean isForceWeapon() {
+        return this.forceWeapon;
+    }
+
+    public boolean isRequireWeapon() {
+        return this.requireWeapon;
+    }
+
+    public boolean isAutoHeld() {
+        return this.autoHeld;
+    }
+
+    public boolean isAttackOwnPet() {
+        return this.attackOwnPet;
+    }
+
+    public double getBaseHealth() {
+        return this.baseHealth;
+    }
+
+    public boolean isScaleHealth() {
+        return this.scaleHealth;
+    }
+
+    public int getHearts() {
+        return this.hearts;
+    }
+
+    public double getMinInHeart() {
+        return this.minInHeart;
+    }
+
+    public double getMaxInHeart() {
+        return this.maxInHeart;
+    }
+
+    private enum ListType {
+        BLACKLIST, WHITELIST
+    }
+}
@@ -31,6 +31,8 @@ import java.util.UUID;
 public class Attributes {
     public static final String SPEED_MODIFIER = "RPGInventory Speed Bonus";
     public static final UUID SPEED_MODIFIER_ID = UUID.fromString("2deaf4fc-1673-4c5b-ac4f-25e37e08760f");
+    public static final String HEALTH_MODIFIER = "RPGInventory Health Bonus";
+    public static final UUID HEALTH_MODIFIER_ID = UUID.fromString("8b1a4c3e-5d0f-4c6a-9e2b-7f3d1c5a9e40");
 
     static final double ONE_BPS = 0.10638297872;
     static final double GALLOP_MULTIPLIER = 4.46808510803;
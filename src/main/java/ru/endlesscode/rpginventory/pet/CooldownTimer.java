@@ -23,58 +23,171 @@ import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
 import ru.endlesscode.rpginventory.RPGInventory;
 import ru.endlesscode.rpginventory.inventory.InventoryManager;
+import ru.endlesscode.rpginventory.inventory.PlayerWrapper;
 import ru.endlesscode.rpginventory.utils.ItemUtils;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
 /**
+ * Cooldowns of all dead pets in one hashed timing wheel with one second per bucket.
+ * <p>
+ * Every second only the current bucket is checked for expired cooldowns, expired pets are
+ * respawned together after the pass. Pet item with time left is rendered only for owners
+ * who look at RPG inventory right now, slot keeps item with real expiry time anyway.
+ *
  * Created by OsipXD on 27.08.2015
  * It is part of the RpgInventory.
  * All rights reserved 2014 - 2016 © «EndlessCode Group»
  */
 class CooldownTimer extends BukkitRunnable {
-    private final Player player;
-    private final ItemStack petItem;
+    private static final int WHEEL_SIZE = 64;
+
+    private static final Map<UUID, Cooldown> COOLDOWNS = new HashMap<>();
+    private static CooldownTimer instance = null;
+
+    private final List<List<Cooldown>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private long tick = 0;
+
+    private CooldownTimer() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            this.wheel.add(new ArrayList<Cooldown>());
+        }
+    }
+
+    static void start(@NotNull RPGInventory plugin) {
+        COOLDOWNS.clear();
+        instance = new CooldownTimer();
+        instance.runTaskTimer(plugin, 20, 20);
+    }
+
+    /**
+     * Starts cooldown of pet, previous cooldown of the player is replaced
+     */
+    static void add(@NotNull Player player, @NotNull ItemStack petItem) {
+        if (instance == null) {
+            return;
+        }
 
-    public CooldownTimer(Player player, ItemStack petItem) {
-        this.player = player;
-        this.petItem = petItem;
+        Cooldown cooldown = new Cooldown(player, petItem,
+                Math.max(instance.tick + PetManager.getCooldown(petItem) - 1, instance.tick + 1));
+        Cooldown previous = COOLDOWNS.put(player.getUniqueId(), cooldown);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+
+        instance.wheel.get((int) (cooldown.deadline%WHEEL_SIZE)).add(cooldown);
     }
 
     @Override
     public void run() {
-        if (!InventoryManager.playerIsLoaded(this.player)) {
-            this.cancel();
-            return;
+        this.tick++;
+
+        List<Cooldown> expired = null;
+        List<Cooldown> bucket = this.wheel.get((int) (this.tick%WHEEL_SIZE));
+        for (Iterator<Cooldown> iterator = bucket.iterator(); iterator.hasNext(); ) {
+            Cooldown cooldown = iterator.next();
+            if (cooldown.cancelled) {
+                iterator.remove();
+            } else if (cooldown.deadline <= this.tick) {
+                iterator.remove();
+                if (expired == null) {
+                    expired = new ArrayList<>();
+                }
+
+                expired.add(cooldown);
+            }
         }
 
-        Inventory inventory = InventoryManager.get(this.player).getInventory();
-        if (!this.player.isOnline() || this.player.isDead() || !PetManager.isEnabled() || inventory == null || inventory.getItem(PetManager.getPetSlotId()) == null) {
-            this.cancel();
+        if (expired != null) {
+            for (Cooldown cooldown : expired) {
+                this.finish(cooldown);
+            }
+        }
+
+        this.renderOpened();
+    }
+
+    private void finish(Cooldown cooldown) {
+        COOLDOWNS.remove(cooldown.player.getUniqueId());
+        cooldown.cancelled = true;
+
+        Inventory inventory = getPetInventory(cooldown.player);
+        if (inventory == null) {
             return;
         }
 
-        int cooldown = PetManager.getCooldown(this.petItem);
+        PetManager.setCooldown(cooldown.petItem, 0);
+        PetManager.spawnPet(cooldown.player, cooldown.petItem);
+        inventory.setItem(PetManager.getPetSlotId(), cooldown.petItem);
+    }
+
+    private void renderOpened() {
+        for (Iterator<Cooldown> iterator = COOLDOWNS.values().iterator(); iterator.hasNext(); ) {
+            Cooldown cooldown = iterator.next();
+            Inventory inventory = getPetInventory(cooldown.player);
+            if (inventory == null) {
+                cooldown.cancelled = true;
+                iterator.remove();
+                continue;
+            }
 
-        if (cooldown > 1) {
-            ItemStack item = this.petItem.clone();
-            if (cooldown < 60) {
-                item.setAmount(cooldown);
+            int seconds = (int) (cooldown.deadline - this.tick + 1);
+            if (seconds != cooldown.shownSeconds && InventoryManager.get(cooldown.player).isOpened()) {
+                inventory.setItem(PetManager.getPetSlotId(), render(cooldown.petItem, seconds));
+                cooldown.shownSeconds = seconds;
             }
+        }
+    }
+
+    /**
+     * Returns inventory of player if pet should still wait for respawn, null otherwise
+     */
+    private static Inventory getPetInventory(Player player) {
+        PlayerWrapper playerWrapper = InventoryManager.get(player);
+        if (playerWrapper == null || !player.isOnline() || player.isDead() || !PetManager.isEnabled()) {
+            return null;
+        }
+
+        Inventory inventory = playerWrapper.getInventory();
+        return inventory.getItem(PetManager.getPetSlotId()) == null ? null : inventory;
+    }
+
+    private static ItemStack render(ItemStack petItem, int seconds) {
+        ItemStack item = petItem.clone();
+        if (seconds < 60) {
+            item.setAmount(seconds);
+        }
+
+        ItemMeta im = item.getItemMeta();
+        im.setDisplayName(petItem.getItemMeta().getDisplayName()
+                + RPGInventory.getLanguage().getCaption("pet.cooldown", seconds));
+        item.setItemMeta(im);
+        PetManager.addGlow(item);
+        PetManager.setCooldown(item, seconds);
+        ItemUtils.setTag(item, ItemUtils.PET_TAG, ItemUtils.getTag(petItem, ItemUtils.PET_TAG));
+        return item;
+    }
+
+    private static class Cooldown {
+        private final Player player;
+        private final ItemStack petItem;
+        private final long deadline;
+
+        private int shownSeconds = -1;
+        private boolean cancelled = false;
 
-            ItemMeta im = item.getItemMeta();
-            im.setDisplayName(this.petItem.getItemMeta().getDisplayName()
-                    + RPGInventory.getLanguage().getCaption("pet.cooldown", cooldown));
-            item.setItemMeta(im);
-            PetManager.addGlow(item);
-            PetManager.setCooldown(item, cooldown);
-            ItemUtils.setTag(item, ItemUtils.PET_TAG, ItemUtils.getTag(this.petItem, ItemUtils.PET_TAG));
-            inventory.setItem(PetManager.getPetSlotId(), item);
-        } else {
-            PetManager.setCooldown(this.petItem, 0);
-            PetManager.spawnPet(this.player, this.petItem);
-            inventory.setItem(PetManager.getPetSlotId(), this.petItem);
-            this.cancel();
+        private Cooldown(Player player, ItemStack petItem, long deadline) {
+            this.player = player;
+            this.petItem = petItem;
+            this.deadline = deadline;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,200 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.pet;
+
+import com.comphenix.protocol.utility.MinecraftReflection;
+import org.bukkit.Location;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
+import ru.endlesscode.rpginventory.RPGInventory;
+import ru.endlesscode.rpginventory.inventory.InventoryManager;
+import ru.endlesscode.rpginventory.inventory.PlayerWrapper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Leads spawned pets to their owners.
+ * <p>
+ * Pets are checked with fixed rate, new path is built only when owner has gone
+ * far enough from the point of the last path. Companions are tamed, so they
+ * follow owners by themselves and aren't handled here.
+ */
+class PetFollower extends BukkitRunnable {
+    private static final int PERIOD = 5;
+    private static final double RESPAWN_DISTANCE_SQUARED = 20*20;
+    private static final double STOP_DISTANCE_SQUARED = 4*4;
+    private static final double OWNER_MOVE_SQUARED = 1.5*1.5;
+
+    private static final Map<UUID, Follow> FOLLOWS = new HashMap<>();
+
+    private static final MethodHandle GET_HANDLE;
+    private static final MethodHandle GET_NAVIGATION;
+    private static final MethodHandle MOVE_TO;
+
+    static {
+        MethodHandle getHandle = null;
+        MethodHandle getNavigation = null;
+        MethodHandle moveTo = null;
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> entityInsentientClass = MinecraftReflection.getMinecraftClass("EntityInsentient");
+            Class<?> navigationAbstractClass = MinecraftReflection.getMinecraftClass("NavigationAbstract");
+
+            getHandle = lookup.unreflect(MinecraftReflection.getCraftEntityClass().getDeclaredMethod("getHandle"))
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            getNavigation = lookup.unreflect(entityInsentientClass.getDeclaredMethod("getNavigation"))
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            moveTo = lookup.unreflect(navigationAbstractClass.getDeclaredMethod("a", double.class, double.class, double.class, double.class))
+                    .asType(MethodType.methodType(void.class, Object.class, double.class, double.class, double.class, double.class));
+        } catch (Exception e) {
+            RPGInventory.getPluginLogger().warning("Pets can't follow players: " + e);
+            getHandle = null;
+        }
+
+        GET_HANDLE = getHandle;
+        GET_NAVIGATION = getNavigation;
+        MOVE_TO = moveTo;
+    }
+
+    private PetFollower() {
+    }
+
+    static void start(@NotNull RPGInventory instance) {
+        FOLLOWS.clear();
+        if (GET_HANDLE != null) {
+            new PetFollower().runTaskTimer(instance, PERIOD, PERIOD);
+        }
+    }
+
+    static void follow(@NotNull Player player, @NotNull LivingEntity pet, @NotNull PetType petType) {
+        if (petType.getRole() == PetType.Role.COMPANION) {
+            FOLLOWS.remove(player.getUniqueId());
+        } else {
+            FOLLOWS.put(player.getUniqueId(), new Follow(player, pet, 0.4/petType.getSpeed()));
+        }
+    }
+
+    static void unfollow(@NotNull UUID playerId) {
+        FOLLOWS.remove(playerId);
+    }
+
+    @Override
+    public void run() {
+        List<Player> farPlayers = null;
+        for (Iterator<Follow> iterator = FOLLOWS.values().iterator(); iterator.hasNext(); ) {
+            Follow follow = iterator.next();
+            if (!follow.isActual()) {
+                iterator.remove();
+                continue;
+            }
+
+            if (follow.update()) {
+                if (farPlayers == null) {
+                    farPlayers = new ArrayList<>();
+                }
+
+                farPlayers.add(follow.player);
+            }
+        }
+
+        // Respawn changes followed pets, so it can't be done in the loop
+        if (farPlayers != null) {
+            for (Player player : farPlayers) {
+                PetManager.respawnPet(player);
+            }
+        }
+    }
+
+    private static class Follow {
+        private final Player player;
+        private final LivingEntity pet;
+        private final double speedModifier;
+
+        private final Location ownerLocation = new Location(null, 0, 0, 0);
+        private final Location petLocation = new Location(null, 0, 0, 0);
+        private final Location target = new Location(null, 0, 0, 0);
+        private boolean hasTarget = false;
+
+        private Follow(Player player, LivingEntity pet, double speedModifier) {
+            this.player = player;
+            this.pet = pet;
+            this.speedModifier = speedModifier;
+        }
+
+        private boolean isActual() {
+            PlayerWrapper playerWrapper = InventoryManager.get(this.player);
+            return playerWrapper != null && this.player.isOnline() && playerWrapper.getPet() == this.pet;
+        }
+
+        /**
+         * Leads pet to the owner if it is needed
+         *
+         * @return true if pet is too far and should be respawned
+         */
+        private boolean update() {
+            if (this.pet.isDead() || this.pet.getPassenger() == this.player) {
+                return false;
+            }
+
+            this.player.getLocation(this.ownerLocation);
+            this.pet.getLocation(this.petLocation);
+            if (this.ownerLocation.getWorld() != this.petLocation.getWorld()
+                    || this.ownerLocation.distanceSquared(this.petLocation) > RESPAWN_DISTANCE_SQUARED) {
+                return true;
+            }
+
+            if (this.ownerLocation.distanceSquared(this.petLocation) < STOP_DISTANCE_SQUARED) {
+                this.hasTarget = false;
+                return false;
+            }
+
+            if (this.hasTarget && this.target.getWorld() == this.ownerLocation.getWorld()
+                    && this.target.distanceSquared(this.ownerLocation) < OWNER_MOVE_SQUARED) {
+                return false;
+            }
+
+            try {
+                Object handle = (Object) GET_HANDLE.invokeExact((Object) this.pet);
+                Object navigation = (Object) GET_NAVIGATION.invokeExact(handle);
+                MOVE_TO.invokeExact(navigation, this.ownerLocation.getX(), this.ownerLocation.getY(),
+                        this.ownerLocation.getZ(), this.speedModifier);
+            } catch (Throwable e) {
+                RPGInventory.getPluginLogger().warning("Failed to lead pet to " + this.player.getName() + ": " + e);
+            }
+
+            this.target.setWorld(this.ownerLocation.getWorld());
+            this.target.setX(this.ownerLocation.getX());
+            this.target.setY(this.ownerLocation.getY());
+            this.target.setZ(this.ownerLocation.getZ());
+            this.hasTarget = true;
+            return false;
+        }
+    }
+}
@@ -20,7 +20,6 @@ package ru.endlesscode.rpginventory.pet;
 
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.LivingEntity;
-import org.bukkit.entity.Tameable;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.jetbrains.annotations.Contract;
@@ -28,6 +27,7 @@ import org.jetbrains.annotations.NotNull;
 import ru.endlesscode.rpginventory.RPGInventory;
 import ru.endlesscode.rpginventory.item.TexturedItem;
 import ru.endlesscode.rpginventory.misc.FileLanguage;
+import ru.endlesscode.rpginventory.utils.ItemClassifier;
 import ru.endlesscode.rpginventory.utils.ItemUtils;
 import ru.endlesscode.rpginventory.utils.StringUtils;
 
@@ -63,7 +63,7 @@ public class PetFood extends TexturedItem {
 
     @Contract("null -> false")
     public static boolean isFoodItem(ItemStack itemStack) {
-        return !ItemUtils.isEmpty(itemStack) && ItemUtils.hasTag(itemStack, ItemUtils.FOOD_TAG);
+        return ItemClassifier.classify(itemStack).is(ItemClassifier.Kind.FOOD);
     }
 
     private void createFoodItem(String id) {
@@ -93,7 +93,7 @@ public class PetFood extends TexturedItem {
     }
 
     public boolean canBeEaten(LivingEntity pet) {
-        PetType petType = PetManager.getPetFromEntity((Tameable) pet);
+        PetType petType = PetManager.getPetFromEntity(pet);
         return petType != null && this.eaters.contains(petType.getSkin().toString());
     }
 }
@@ -42,7 +42,7 @@ import ru.endlesscode.rpginventory.inventory.InventoryManager;
 import ru.endlesscode.rpginventory.inventory.PlayerWrapper;
 import ru.endlesscode.rpginventory.inventory.slot.SlotManager;
 import ru.endlesscode.rpginventory.utils.EffectUtils;
-import ru.endlesscode.rpginventory.utils.ItemUtils;
+import ru.endlesscode.rpginventory.utils.ItemClassifier;
 import ru.endlesscode.rpginventory.utils.LocationUtils;
 
 import java.io.File;
@@ -50,6 +50,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * Created by OsipXD on 26.08.2015
@@ -59,6 +60,8 @@ import java.util.Map;
 public class PetManager {
     private static final Map<String, PetType> PETS = new HashMap<>();
     private static final Map<String, PetFood> PET_FOOD = new HashMap<>();
+    // Spawned pets by UUID of entity, so other entities are rejected without reading of owner's inventory
+    private static final Map<UUID, ActivePet> ACTIVE_PETS = new HashMap<>();
     private static int SLOT_PET;
 
     private PetManager() {
@@ -93,6 +96,7 @@ public class PetManager {
                 PetManager.PET_FOOD.put(key, pet);
             }
             RPGInventory.getPluginLogger().info(PetManager.PET_FOOD.size() + " food(s) has been loaded");
+            ItemClassifier.clearCache();
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -104,6 +108,8 @@ public class PetManager {
 
         // Register events
         instance.getServer().getPluginManager().registerEvents(new PetListener(), instance);
+        PetFollower.start(instance);
+        CooldownTimer.start(instance);
         return true;
     }
 
@@ -143,7 +149,7 @@ public class PetManager {
     }
 
     public static void startCooldownTimer(Player player, ItemStack petItem) {
-        new CooldownTimer(player, petItem).runTaskTimer(RPGInventory.getInstance(), 20, 20);
+        CooldownTimer.add(player, petItem);
     }
 
     public static void spawnPet(@NotNull final Player player, @NotNull ItemStack petItem) {
@@ -193,6 +199,8 @@ public class PetManager {
         speedAttribute.setBaseValue(petType.getSpeed());
 
         InventoryManager.get(player).setPet(pet);
+        ACTIVE_PETS.put(pet.getUniqueId(), new ActivePet(player, petType));
+        PetFollower.follow(player, pet, petType);
 
         // Pet skin
         Disguise disguise = petType.getDisguise();
@@ -219,6 +227,7 @@ public class PetManager {
         if (petItem != null) {
             PetManager.saveHealth(petItem, pet.getHealth());
             inventory.setItem(SLOT_PET, petItem);
+            playerWrapper.markModified();
         }
 
         // Pet skin
@@ -228,7 +237,25 @@ public class PetManager {
 
         EffectUtils.playDespawnEffect(pet);
         pet.remove();
-        playerWrapper.setPet(null);
+        PetManager.forgetPet(pet);
+    }
+
+    /**
+     * Drops pet from its owner, index of pets and followers. Should be called
+     * whenever pet is gone, even if it wasn't despawned by the plugin (e.g. died).
+     */
+    public static void forgetPet(@NotNull Entity entity) {
+        ActivePet activePet = ACTIVE_PETS.remove(entity.getUniqueId());
+        if (activePet == null) {
+            return;
+        }
+
+        PlayerWrapper playerWrapper = InventoryManager.get(activePet.owner);
+        if (playerWrapper != null && playerWrapper.getPet() == entity) {
+            playerWrapper.setPet(null);
+        }
+
+        PetFollower.unfollow(activePet.owner.getUniqueId());
     }
 
     public static void respawnPet(@NotNull OfflinePlayer player) {
@@ -244,41 +271,58 @@ public class PetManager {
     @Nullable
     @Contract("null - > null")
     public static PetFood getFoodFromItem(@Nullable ItemStack item) {
-        String id;
-
-        if (ItemUtils.isEmpty(item) || (id = ItemUtils.getTag(item, ItemUtils.FOOD_TAG)) == null) {
-            return null;
-        }
-
-        return PET_FOOD.get(id);
+        return ItemClassifier.classify(item).getPetFood();
     }
 
     @Nullable
     @Contract("null - > null")
     public static PetType getPetFromItem(@Nullable ItemStack item) {
-        String id;
+        return ItemClassifier.classify(item).getPetType();
+    }
 
-        if (ItemUtils.isEmpty(item) || (id = ItemUtils.getTag(item, ItemUtils.PET_TAG)) == null) {
-            return null;
-        }
+    @Nullable
+    public static PetType getPetType(String petId) {
+        return PETS.get(petId);
+    }
+
+    @Nullable
+    public static PetFood getPetFood(String foodId) {
+        return PET_FOOD.get(foodId);
+    }
+
+    /**
+     * Returns type of pet spawned by the plugin or null if entity isn't such pet
+     */
+    @Nullable
+    public static PetType getPetFromEntity(@NotNull Entity entity) {
+        ActivePet activePet = getActivePet(entity);
+        return activePet == null ? null : activePet.petType;
+    }
 
-        return PETS.get(id);
+    /**
+     * Returns loaded owner of pet spawned by the plugin or null if entity isn't such pet
+     */
+    @Nullable
+    public static Player getPetOwner(@NotNull Entity entity) {
+        ActivePet activePet = getActivePet(entity);
+        return activePet == null ? null : activePet.owner;
     }
 
     @Nullable
-    public static PetType getPetFromEntity(@NotNull Tameable entity) {
-        if (!entity.isTamed() || entity.getOwner() == null) {
+    private static ActivePet getActivePet(@NotNull Entity entity) {
+        ActivePet activePet = ACTIVE_PETS.get(entity.getUniqueId());
+        if (activePet == null) {
             return null;
         }
 
-        OfflinePlayer player = (OfflinePlayer) entity.getOwner();
-        PlayerWrapper playerWrapper = InventoryManager.get(player);
-
-        if (!InventoryManager.playerIsLoaded(player) || !PetManager.isEnabled() || entity != playerWrapper.getPet()) {
+        // Owner could be unloaded without despawn of pet, e.g. on reload
+        PlayerWrapper playerWrapper = InventoryManager.get(activePet.owner);
+        if (playerWrapper == null || playerWrapper.getPet() != entity) {
+            ACTIVE_PETS.remove(entity.getUniqueId());
             return null;
         }
 
-        return PetManager.getPetFromItem(playerWrapper.getInventory().getItem(SLOT_PET));
+        return activePet;
     }
 
     static void addGlow(@NotNull ItemStack itemStack) {
@@ -371,4 +415,14 @@ public class PetManager {
 
         return false;
     }
-}
\ No newline at end of file
+
+    private static class ActivePet {
+        private final Player owner;
+        private final PetType petType;
+
+        private ActivePet(Player owner, PetType petType) {
+            this.owner = owner;
+            this.petType = petType;
+        }
+    }
+}
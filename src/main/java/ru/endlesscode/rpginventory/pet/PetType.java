@@ -32,6 +32,7 @@ import org.jetbrains.annotations.Nullable;
 import ru.endlesscode.rpginventory.RPGInventory;
 import ru.endlesscode.rpginventory.item.ClassedItem;
 import ru.endlesscode.rpginventory.misc.FileLanguage;
+import ru.endlesscode.rpginventory.utils.ItemClassifier;
 import ru.endlesscode.rpginventory.utils.ItemUtils;
 import ru.endlesscode.rpginventory.utils.StringUtils;
 import ru.endlesscode.rpginventory.utils.Utils;
@@ -94,7 +95,7 @@ public class PetType extends ClassedItem {
 
     @Contract("null -> false")
     public static boolean isPetItem(ItemStack item) {
-        return !ItemUtils.isEmpty(item) && ItemUtils.hasTag(item, ItemUtils.PET_TAG);
+        return ItemClassifier.classify(item).is(ItemClassifier.Kind.PET);
     }
 
     @Nullable
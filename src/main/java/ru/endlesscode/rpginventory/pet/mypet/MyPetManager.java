@@ -50,6 +50,7 @@ import ru.endlesscode.rpginventory.inventory.ActionType;
 import ru.endlesscode.rpginventory.inventory.InventoryManager;
 import ru.endlesscode.rpginventory.inventory.slot.Slot;
 import ru.endlesscode.rpginventory.inventory.slot.SlotManager;
+import ru.endlesscode.rpginventory.utils.ItemClassifier;
 import ru.endlesscode.rpginventory.utils.ItemUtils;
 import ru.endlesscode.rpginventory.utils.PlayerUtils;
 
@@ -62,7 +63,6 @@ import java.util.UUID;
  */
 
 public class MyPetManager implements Listener {
-    private static final String MYPET_TAG = "mypet.uuid";
 
     public static boolean init(RPGInventory instance) {
         if (MyPetManager.getMyPetSlot() == null) {
@@ -87,13 +87,7 @@ public class MyPetManager implements Listener {
 
     @Nullable
     private static Slot getMyPetSlot() {
-        for (Slot slot : SlotManager.getSlotManager().getSlots()) {
-            if (slot.getSlotType() == Slot.SlotType.MYPET) {
-                return slot;
-            }
-        }
-
-        return null;
+        return SlotManager.getSlotManager().getMyPetSlot();
     }
 
     private static boolean swapMyPets(final Player player, boolean hasPet, @NotNull ItemStack newPet) {
@@ -115,7 +109,7 @@ public class MyPetManager implements Listener {
             return false;
         }
 
-        final UUID petUUID = UUID.fromString(ItemUtils.getTag(newPet, MYPET_TAG));
+        final UUID petUUID = UUID.fromString(ItemClassifier.classify(newPet).getUid());
         new BukkitRunnable() {
             @Override
             public void run() {
@@ -127,7 +121,7 @@ public class MyPetManager implements Listener {
     }
 
     private static boolean isMyPetItem(ItemStack item) {
-        return !ItemUtils.isEmpty(item) && ItemUtils.hasTag(item, MYPET_TAG);
+        return ItemClassifier.classify(item).is(ItemClassifier.Kind.MYPET);
     }
 
     private static void activateMyPet(final Player player, UUID petUUID) {
@@ -196,12 +190,13 @@ public class MyPetManager implements Listener {
             ItemStack currentPet = inventory.getItem(petSlot.getSlotId());
             if (isMyPetItem(currentPet)) {
                 MyPet pet = mpPlayer.getMyPet();
-                UUID petUUID = UUID.fromString(ItemUtils.getTag(currentPet, MYPET_TAG));
+                UUID petUUID = UUID.fromString(ItemClassifier.classify(currentPet).getUid());
                 if (petUUID.equals(pet.getUUID())) {
                     return;
                 }
             } else {
                 inventory.setItem(petSlot.getSlotId(), petSlot.getCup());
+                InventoryManager.get(player).markModified();
             }
 
             MyPetApi.getMyPetManager().deactivateMyPet(mpPlayer, false);
@@ -234,7 +229,7 @@ public class MyPetManager implements Listener {
         ItemMeta meta = petItem.getItemMeta();
         meta.setDisplayName("MyPet Egg: " + event.getMyPet().getPetName());
         petItem.setItemMeta(meta);
-        petItem = ItemUtils.setTag(petItem, MYPET_TAG, event.getMyPet().getUUID().toString());
+        petItem = ItemUtils.setTag(petItem, ItemUtils.MYPET_TAG, event.getMyPet().getUUID().toString());
 
         Inventory inventory = InventoryManager.get(player).getInventory();
         Slot petSlot = getMyPetSlot();
@@ -242,6 +237,7 @@ public class MyPetManager implements Listener {
         ItemStack currentPet = inventory.getItem(petSlot.getSlotId());
         boolean hasPet = !petSlot.isCup(currentPet);
         inventory.setItem(petSlot.getSlotId(), petItem);
+        InventoryManager.get(player).markModified();
 
         if (hasPet) {
             player.getInventory().addItem(currentPet);
@@ -264,7 +260,7 @@ public class MyPetManager implements Listener {
         if (!isMyPetItem(currentPet)) {
             keepPet = false;
         } else {
-            UUID petUUID = UUID.fromString(ItemUtils.getTag(currentPet, MYPET_TAG));
+            UUID petUUID = UUID.fromString(ItemClassifier.classify(currentPet).getUid());
             if (!petUUID.equals(event.getMyPet().getUUID())) {
                 keepPet = false;
             }
@@ -300,6 +296,7 @@ public class MyPetManager implements Listener {
 
                 player.getEquipment().setItemInMainHand(currentPet);
                 inventory.setItem(petSlot.getSlotId(), newPet);
+                InventoryManager.get(player).markModified();
 
                 swapMyPets(player, hasPet, newPet);
             }
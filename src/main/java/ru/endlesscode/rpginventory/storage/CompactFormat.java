@@ -0,0 +1,273 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.storage;
+
+import com.comphenix.protocol.wrappers.nbt.NbtCompound;
+import com.comphenix.protocol.wrappers.nbt.NbtFactory;
+import com.comphenix.protocol.wrappers.nbt.io.NbtBinarySerializer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.endlesscode.rpginventory.RPGInventory;
+import ru.endlesscode.rpginventory.misc.Config;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary format of .inv and .bp files.
+ * <p>
+ * File starts with uncompressed header: magic number, format version, kind of file and
+ * compression codec (since v3, v2 files are always GZIP-compressed). Body is compressed
+ * and contains material dictionary followed by data. Only non-empty slots are stored,
+ * every slot as varint index and item. Files without header are legacy GZIP-compressed NBT files.
+ */
+public class CompactFormat {
+    public static final byte INVENTORY = 'I';
+    public static final byte BACKPACK = 'B';
+
+    private static final int MAGIC = 0x52504749; // "RPGI"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 7;
+
+    private static volatile CompressionCodec codec = CompressionCodec.DEFLATE;
+    private static volatile int level = 1;
+
+    private CompactFormat() {
+    }
+
+    public static void init() {
+        String codecName = Config.getConfig().getString("storage.compression", CompressionCodec.DEFLATE.name());
+        try {
+            codec = CompressionCodec.valueOf(codecName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            RPGInventory.getPluginLogger().warning("Unknown compression: " + codecName + ", DEFLATE will be used");
+            codec = CompressionCodec.DEFLATE;
+        }
+
+        level = Math.max(0, Math.min(9, Config.getConfig().getInt("storage.compression-level", 1)));
+    }
+
+    @NotNull
+    public static CompressionCodec getCodec() {
+        return codec;
+    }
+
+    public static int getLevel() {
+        return level;
+    }
+
+    /**
+     * Writes header and compressed body with current codec. Output stream is not closed.
+     */
+    public static void write(@NotNull OutputStream output, byte kind, @NotNull BodyWriter writer) throws IOException {
+        CompressionCodec codec = CompactFormat.codec;
+        writeHeader(output, kind, codec);
+
+        OutputStream compressedOutput = codec.compress(output, level);
+        DataOutputStream dataOutput = new DataOutputStream(compressedOutput);
+        writer.write(dataOutput);
+        dataOutput.flush();
+        codec.finish(compressedOutput);
+    }
+
+    public static void writeHeader(@NotNull OutputStream output, byte kind, @NotNull CompressionCodec codec) throws IOException {
+        DataOutputStream dataOutput = new DataOutputStream(output);
+        dataOutput.writeInt(MAGIC);
+        dataOutput.writeByte(VERSION);
+        dataOutput.writeByte(kind);
+        dataOutput.writeByte(codec.getId());
+        dataOutput.flush();
+    }
+
+    /**
+     * Reads header of compact file.
+     *
+     * @param input Stream that supports mark
+     * @param kind  Expected kind of file
+     * @return Codec of file body if file has compact format and header was skipped,
+     * null if file has legacy format (stream position stays untouched)
+     * @throws IOException if file has unknown version, codec or unexpected kind
+     */
+    @Nullable
+    public static CompressionCodec readHeader(@NotNull InputStream input, byte kind) throws IOException {
+        input.mark(HEADER_SIZE);
+        DataInputStream dataInput = new DataInputStream(input);
+
+        int magic;
+        try {
+            magic = dataInput.readInt();
+        } catch (EOFException e) {
+            magic = 0;
+        }
+
+        if (magic != MAGIC) {
+            input.reset();
+            return null;
+        }
+
+        int version = dataInput.readUnsignedByte();
+        if (version < 2 || version > VERSION) {
+            throw new IOException("Unsupported file version: " + version);
+        }
+
+        int fileKind = dataInput.readByte();
+        if (fileKind != kind) {
+            throw new IOException("Unexpected kind of file: " + (char) fileKind);
+        }
+
+        // =========== Added in v3 ============
+        if (version == 2) {
+            return CompressionCodec.GZIP;
+        }
+        // ====================================
+
+        int codecId = dataInput.readUnsignedByte();
+        CompressionCodec codec = CompressionCodec.getById(codecId);
+        if (codec == null) {
+            throw new IOException("Unknown compression codec: " + codecId);
+        }
+
+        return codec;
+    }
+
+    /**
+     * Opens body of the file after {@link #readHeader}
+     *
+     * @param codec Codec returned by {@link #readHeader}, legacy files are GZIP-compressed
+     */
+    @NotNull
+    public static DataInputStream openBody(@NotNull InputStream input, @Nullable CompressionCodec codec) throws IOException {
+        return new DataInputStream((codec == null ? CompressionCodec.GZIP : codec).decompress(input));
+    }
+
+    public static void writeVarInt(@NotNull DataOutput output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        output.writeByte(value);
+    }
+
+    public static int readVarInt(@NotNull DataInput input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("VarInt is too big");
+    }
+
+    /**
+     * Writes item with its index in the slot
+     *
+     * @param item NBT compound in format of {@link ru.endlesscode.rpginventory.utils.ItemUtils#itemStackToNBT}
+     */
+    public static void writeItem(@NotNull DataOutput output, @NotNull MaterialDictionary dictionary,
+                                 int index, @NotNull NbtCompound item) throws IOException {
+        boolean hasTag = item.containsKey("tag");
+        writeVarInt(output, index);
+        writeVarInt(output, dictionary.indexOf(item.getString("material")) << 1 | (hasTag ? 1 : 0));
+        writeVarInt(output, item.getInteger("amount"));
+        short data = item.getShort("data");
+        writeVarInt(output, (data << 1) ^ (data >> 31));
+
+        if (hasTag) {
+            NbtBinarySerializer.DEFAULT.serialize(item.getCompound("tag"), output);
+        }
+    }
+
+    /**
+     * Reads item written by {@link #writeItem}. Name of returned compound is index of item.
+     */
+    @NotNull
+    public static NbtCompound readItem(@NotNull DataInput input, @NotNull List<String> dictionary) throws IOException {
+        int index = readVarInt(input);
+        int materialId = readVarInt(input);
+        int amount = readVarInt(input);
+        int data = readVarInt(input);
+
+        if (materialId >>> 1 >= dictionary.size()) {
+            throw new IOException("Unknown material id: " + (materialId >>> 1));
+        }
+
+        NbtCompound item = NbtFactory.ofCompound(String.valueOf(index));
+        item.put("material", dictionary.get(materialId >>> 1));
+        item.put("amount", amount);
+        item.put("data", (short) ((data >>> 1) ^ -(data & 1)));
+        if ((materialId & 1) != 0) {
+            item.put("tag", NbtBinarySerializer.DEFAULT.deserializeCompound(input));
+        }
+
+        return item;
+    }
+
+    @NotNull
+    public static List<String> readDictionary(@NotNull DataInput input) throws IOException {
+        int size = readVarInt(input);
+        List<String> dictionary = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            dictionary.add(input.readUTF());
+        }
+
+        return dictionary;
+    }
+
+    /**
+     * Materials used in the file. Every material name is written once
+     * and items refer to it by index.
+     */
+    public static class MaterialDictionary {
+        private final Map<String, Integer> materials = new LinkedHashMap<>();
+
+        public void add(@NotNull NbtCompound item) {
+            String material = item.getString("material");
+            if (!this.materials.containsKey(material)) {
+                this.materials.put(material, this.materials.size());
+            }
+        }
+
+        public void write(@NotNull DataOutput output) throws IOException {
+            writeVarInt(output, this.materials.size());
+            for (String material : this.materials.keySet()) {
+                output.writeUTF(material);
+            }
+        }
+
+        private int indexOf(@NotNull String material) throws IOException {
+            Integer index = this.materials.get(material);
+            if (index == null) {
+                throw new IOException("Material " + material + " is not in dictionary");
+            }
+
+            return index;
+        }
+    }
+
+    public interface BodyWriter {
+        void write(@NotNull DataOutputStream output) throws IOException;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.*;
+
+/**
+ * Compression of file body. Id of codec is written to the file header,
+ * so files saved with any codec can be read regardless of current settings.
+ */
+public enum CompressionCodec {
+    NONE(0) {
+        @NotNull
+        @Override
+        public OutputStream compress(@NotNull OutputStream output, int level) {
+            return output;
+        }
+
+        @Override
+        public void finish(@NotNull OutputStream compressed) throws IOException {
+            compressed.flush();
+        }
+
+        @NotNull
+        @Override
+        public InputStream decompress(@NotNull InputStream input) {
+            return input;
+        }
+    },
+
+    GZIP(1) {
+        @NotNull
+        @Override
+        public OutputStream compress(@NotNull OutputStream output, int level) throws IOException {
+            // Compressed stream is finished but never closed, so deflater is ended here
+            return new GZIPOutputStream(output) {
+                private boolean ended = false;
+
+                @Override
+                public void finish() throws IOException {
+                    if (this.ended) {
+                        return;
+                    }
+
+                    super.finish();
+                    this.def.end();
+                    this.ended = true;
+                }
+            };
+        }
+
+        @Override
+        public void finish(@NotNull OutputStream compressed) throws IOException {
+            ((GZIPOutputStream) compressed).finish();
+        }
+
+        @NotNull
+        @Override
+        public InputStream decompress(@NotNull InputStream input) throws IOException {
+            return new GZIPInputStream(input) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    this.inf.end();
+                }
+            };
+        }
+    },
+
+    DEFLATE(2) {
+        @NotNull
+        @Override
+        public OutputStream compress(@NotNull OutputStream output, int level) {
+            return new DeflaterOutputStream(output, new Deflater(level, true)) {
+                private boolean ended = false;
+
+                @Override
+                public void finish() throws IOException {
+                    if (this.ended) {
+                        return;
+                    }
+
+                    super.finish();
+                    this.def.end();
+                    this.ended = true;
+                }
+            };
+        }
+
+        @Override
+        public void finish(@NotNull OutputStream compressed) throws IOException {
+            ((DeflaterOutputStream) compressed).finish();
+        }
+
+        @NotNull
+        @Override
+        public InputStream decompress(@NotNull InputStream input) {
+            return new InflaterInputStream(input, new Inflater(true)) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    this.inf.end();
+                }
+            };
+        }
+    },
+
+    LZ(3) {
+        @NotNull
+        @Override
+        public OutputStream compress(@NotNull OutputStream output, int level) {
+            return new LzCompression.Output(output);
+        }
+
+        @Override
+        public void finish(@NotNull OutputStream compressed) throws IOException {
+            ((LzCompression.Output) compressed).finish();
+        }
+
+        @NotNull
+        @Override
+        public InputStream decompress(@NotNull InputStream input) {
+            return new LzCompression.Input(input);
+        }
+    };
+
+    private final int id;
+
+    CompressionCodec(int id) {
+        this.id = id;
+    }
+
+    @Nullable
+    public static CompressionCodec getById(int id) {
+        for (CompressionCodec codec : values()) {
+            if (codec.id == id) {
+                return codec;
+            }
+        }
+
+        return null;
+    }
+
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Wraps output stream with compressing stream
+     *
+     * @param level Compression level, used only by DEFLATE
+     */
+    @NotNull
+    public abstract OutputStream compress(@NotNull OutputStream output, int level) throws IOException;
+
+    /**
+     * Writes the rest of compressed data without closing of underlying stream
+     *
+     * @param compressed Stream returned by {@link #compress}
+     */
+    public abstract void finish(@NotNull OutputStream compressed) throws IOException;
+
+    @NotNull
+    public abstract InputStream decompress(@NotNull InputStream input) throws IOException;
+}
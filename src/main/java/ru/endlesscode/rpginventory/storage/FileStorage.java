@@ -0,0 +1,129 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.endlesscode.rpginventory.utils.FileUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stores every record in its own file {@code <uuid><extension>}.
+ * Files are written to temporary file first and then atomically replace the old ones.
+ */
+public class FileStorage implements Storage {
+    private final File folder;
+    private final String extension;
+
+    public FileStorage(@NotNull File folder, @NotNull String extension) {
+        this.folder = folder;
+        this.extension = extension;
+    }
+
+    @Override
+    public boolean contains(@NotNull UUID id) {
+        return this.getFile(id).exists();
+    }
+
+    @Nullable
+    @Override
+    public byte[] load(@NotNull UUID id) throws IOException {
+        try {
+            return Files.readAllBytes(this.getFile(id).toPath());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void save(@NotNull UUID id, @NotNull byte[] data) throws IOException {
+        if (!this.folder.exists() && !this.folder.mkdirs()) {
+            throw new IOException("Failed to create directory: " + this.folder.getName());
+        }
+
+        File file = this.getFile(id);
+        File tempFile = FileUtils.getTempFile(file);
+        try (FileOutputStream output = new FileOutputStream(tempFile)) {
+            output.write(data);
+            output.getFD().sync();
+        }
+
+        FileUtils.replaceFile(tempFile, file);
+    }
+
+    @Override
+    public void saveAll(@NotNull Map<UUID, byte[]> records) throws IOException {
+        for (Map.Entry<UUID, byte[]> record : records.entrySet()) {
+            this.save(record.getKey(), record.getValue());
+        }
+    }
+
+    @Override
+    public void delete(@NotNull UUID id) throws IOException {
+        Files.deleteIfExists(this.getFile(id).toPath());
+    }
+
+    @NotNull
+    @Override
+    public List<UUID> list() {
+        List<UUID> ids = new ArrayList<>();
+        File[] files = this.folder.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(FileStorage.this.extension);
+            }
+        });
+
+        if (files == null) {
+            return ids;
+        }
+
+        for (File file : files) {
+            try {
+                ids.add(UUID.fromString(FileUtils.stripExtension(file.getName())));
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+
+        return ids;
+    }
+
+    @Override
+    public void maintain() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @NotNull
+    private File getFile(@NotNull UUID id) {
+        return new File(this.folder, id + this.extension);
+    }
+}
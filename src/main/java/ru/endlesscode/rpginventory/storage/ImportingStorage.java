@@ -0,0 +1,122 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.endlesscode.rpginventory.RPGInventory;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Storage that moves records from files of previous layout to another storage.
+ * <p>
+ * Files are imported in background by {@link #maintain()}, until then records are loaded from files.
+ */
+class ImportingStorage implements Storage {
+    private static final int BATCH_SIZE = 100;
+
+    private final String name;
+    private final Storage storage;
+    private final FileStorage files;
+
+    ImportingStorage(@NotNull String name, @NotNull Storage storage, @NotNull FileStorage files) {
+        this.name = name;
+        this.storage = storage;
+        this.files = files;
+    }
+
+    @Override
+    public boolean contains(@NotNull UUID id) throws IOException {
+        return this.storage.contains(id) || this.files.contains(id);
+    }
+
+    @Nullable
+    @Override
+    public byte[] load(@NotNull UUID id) throws IOException {
+        byte[] data = this.storage.load(id);
+        if (data == null) {
+            data = this.files.load(id);
+        }
+
+        // File can be imported while we tried to read it
+        return data == null ? this.storage.load(id) : data;
+    }
+
+    @Override
+    public void save(@NotNull UUID id, @NotNull byte[] data) throws IOException {
+        this.storage.save(id, data);
+    }
+
+    @Override
+    public void saveAll(@NotNull Map<UUID, byte[]> records) throws IOException {
+        this.storage.saveAll(records);
+    }
+
+    @Override
+    public void delete(@NotNull UUID id) throws IOException {
+        this.storage.delete(id);
+        this.files.delete(id);
+    }
+
+    @NotNull
+    @Override
+    public List<UUID> list() throws IOException {
+        Set<UUID> ids = new LinkedHashSet<>(this.storage.list());
+        ids.addAll(this.files.list());
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * Imports files in batches and then maintains target storage.
+     * Records that are already in target storage are newer, so their files are just deleted.
+     */
+    @Override
+    public void maintain() throws IOException {
+        List<UUID> ids = this.files.list();
+        if (!ids.isEmpty()) {
+            int imported = 0;
+            for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+                Map<UUID, byte[]> batch = new LinkedHashMap<>();
+                for (UUID id : ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()))) {
+                    byte[] data = this.storage.contains(id) ? null : this.files.load(id);
+                    if (data != null) {
+                        batch.put(id, data);
+                    }
+                }
+
+                this.storage.saveAll(batch);
+                imported += batch.size();
+                for (UUID id : ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()))) {
+                    this.files.delete(id);
+                }
+            }
+
+            RPGInventory.getPluginLogger().info(imported + " " + this.name + " has been imported from files");
+        }
+
+        this.storage.maintain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.storage.close();
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Fast LZ77 compression in LZ4 block style.
+ * <p>
+ * Stream is split into blocks. Every block is written as varint raw length and
+ * varint compressed length (0 if block is stored as is) followed by block data.
+ * Block with zero raw length marks the end of stream.
+ * <p>
+ * Compressed block is a list of sequences. Sequence is a token (high 4 bits - literals
+ * length, low 4 bits - match length minus 4), literals and 2-byte little-endian offset
+ * of the match. Lengths that doesn't fit in 4 bits are continued with bytes until byte
+ * is not 255. The last sequence has only literals.
+ */
+class LzCompression {
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_LOG = 12;
+
+    private LzCompression() {
+    }
+
+    private static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    private static int readInt(byte[] buffer, int pos) {
+        return (buffer[pos] & 0xFF) | (buffer[pos + 1] & 0xFF) << 8
+                | (buffer[pos + 2] & 0xFF) << 16 | (buffer[pos + 3] & 0xFF) << 24;
+    }
+
+    private static int writeLength(byte[] dst, int out, int length) {
+        while (length >= 255) {
+            dst[out++] = (byte) 255;
+            length -= 255;
+        }
+
+        dst[out++] = (byte) length;
+        return out;
+    }
+
+    private static int writeLiterals(byte[] src, int anchor, int literals, int matchToken, byte[] dst, int out) {
+        dst[out++] = (byte) (Math.min(literals, 15) << 4 | matchToken);
+        if (literals >= 15) {
+            out = writeLength(dst, out, literals - 15);
+        }
+
+        System.arraycopy(src, anchor, dst, out, literals);
+        return out + literals;
+    }
+
+    /**
+     * Compresses block
+     *
+     * @return Length of compressed data
+     */
+    static int compress(byte[] src, int length, byte[] dst) {
+        int[] table = new int[1 << HASH_LOG];
+        Arrays.fill(table, -1);
+
+        int anchor = 0;
+        int pos = 0;
+        int out = 0;
+        int limit = length - MIN_MATCH;
+        while (pos < limit) {
+            int sequence = readInt(src, pos);
+            int hash = (sequence * -1640531535) >>> (32 - HASH_LOG);
+            int ref = table[hash];
+            table[hash] = pos;
+
+            if (ref < 0 || pos - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                pos++;
+                continue;
+            }
+
+            int matchLength = MIN_MATCH;
+            while (pos + matchLength < length && src[ref + matchLength] == src[pos + matchLength]) {
+                matchLength++;
+            }
+
+            int matchToken = Math.min(matchLength - MIN_MATCH, 15);
+            out = writeLiterals(src, anchor, pos - anchor, matchToken, dst, out);
+            int offset = pos - ref;
+            dst[out++] = (byte) offset;
+            dst[out++] = (byte) (offset >>> 8);
+            if (matchToken == 15) {
+                out = writeLength(dst, out, matchLength - MIN_MATCH - 15);
+            }
+
+            pos += matchLength;
+            anchor = pos;
+        }
+
+        return writeLiterals(src, anchor, length - anchor, 0, dst, out);
+    }
+
+    static void decompress(byte[] src, int length, byte[] dst, int rawLength) throws IOException {
+        int in = 0;
+        int out = 0;
+        try {
+            while (true) {
+                int token = src[in++] & 0xFF;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        b = src[in++] & 0xFF;
+                        literals += b;
+                    } while (b == 255);
+                }
+
+                System.arraycopy(src, in, dst, out, literals);
+                in += literals;
+                out += literals;
+                if (in >= length) {
+                    break;
+                }
+
+                int offset = (src[in++] & 0xFF) | (src[in++] & 0xFF) << 8;
+                int matchLength = token & 0x0F;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[in++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+
+                int ref = out - offset;
+                if (offset == 0 || ref < 0) {
+                    throw new IOException("Corrupted LZ block: wrong offset");
+                }
+
+                for (int i = 0; i < matchLength + MIN_MATCH; i++) {
+                    dst[out++] = dst[ref++];
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupted LZ block", e);
+        }
+
+        if (out != rawLength) {
+            throw new IOException("Corrupted LZ block: wrong length");
+        }
+    }
+
+    static class Output extends FilterOutputStream {
+        private final DataOutputStream dataOutput;
+        private final byte[] buffer = new byte[BLOCK_SIZE];
+        private final byte[] compressed = new byte[maxCompressedLength(BLOCK_SIZE)];
+
+        private int count = 0;
+        private boolean finished = false;
+
+        Output(@NotNull OutputStream output) {
+            super(output);
+            this.dataOutput = new DataOutputStream(output);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (this.count == this.buffer.length) {
+                this.writeBlock();
+            }
+
+            this.buffer[this.count++] = (byte) b;
+        }
+
+        @Override
+        public void write(@NotNull byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (this.count == this.buffer.length) {
+                    this.writeBlock();
+                }
+
+                int chunk = Math.min(len, this.buffer.length - this.count);
+                System.arraycopy(b, off, this.buffer, this.count, chunk);
+                this.count += chunk;
+                off += chunk;
+                len -= chunk;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.writeBlock();
+            this.dataOutput.flush();
+        }
+
+        /**
+         * Writes the rest of data and end of stream without closing of underlying stream
+         */
+        void finish() throws IOException {
+            if (this.finished) {
+                return;
+            }
+
+            this.writeBlock();
+            CompactFormat.writeVarInt(this.dataOutput, 0);
+            this.dataOutput.flush();
+            this.finished = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.finish();
+            super.close();
+        }
+
+        private void writeBlock() throws IOException {
+            if (this.count == 0) {
+                return;
+            }
+
+            int length = compress(this.buffer, this.count, this.compressed);
+            CompactFormat.writeVarInt(this.dataOutput, this.count);
+            if (length < this.count) {
+                CompactFormat.writeVarInt(this.dataOutput, length);
+                this.dataOutput.write(this.compressed, 0, length);
+            } else {
+                CompactFormat.writeVarInt(this.dataOutput, 0);
+                this.dataOutput.write(this.buffer, 0, this.count);
+            }
+
+            this.count = 0;
+        }
+    }
+
+    static class Input extends FilterInputStream {
+        private final DataInputStream dataInput;
+        private final byte[] buffer = new byte[BLOCK_SIZE];
+        private final byte[] compressed = new byte[maxCompressedLength(BLOCK_SIZE)];
+
+        private int pos = 0;
+        private int limit = 0;
+        private boolean finished = false;
+
+        Input(@NotNull InputStream input) {
+            super(input);
+            this.dataInput = new DataInputStream(input);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!this.ensureData()) {
+                return -1;
+            }
+
+            return this.buffer[this.pos++] & 0xFF;
+        }
+
+        @Override
+        public int read(@NotNull byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (!this.ensureData()) {
+                return -1;
+            }
+
+            int chunk = Math.min(len, this.limit - this.pos);
+            System.arraycopy(this.buffer, this.pos, b, off, chunk);
+            this.pos += chunk;
+            return chunk;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n && this.ensureData()) {
+                int chunk = (int) Math.min(n - skipped, this.limit - this.pos);
+                this.pos += chunk;
+                skipped += chunk;
+            }
+
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return this.limit - this.pos;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private boolean ensureData() throws IOException {
+            while (this.pos == this.limit) {
+                if (this.finished) {
+                    return false;
+                }
+
+                this.readBlock();
+            }
+
+            return true;
+        }
+
+        private void readBlock() throws IOException {
+            int rawLength = CompactFormat.readVarInt(this.dataInput);
+            if (rawLength == 0) {
+                this.finished = true;
+                return;
+            }
+
+            if (rawLength > BLOCK_SIZE) {
+                throw new IOException("Corrupted LZ stream: block is too big");
+            }
+
+            int length = CompactFormat.readVarInt(this.dataInput);
+            if (length == 0) {
+                this.dataInput.readFully(this.buffer, 0, rawLength);
+            } else if (length > this.compressed.length) {
+                throw new IOException("Corrupted LZ stream: block is too big");
+            } else {
+                this.dataInput.readFully(this.compressed, 0, length);
+                decompress(this.compressed, length, this.buffer, rawLength);
+            }
+
+            this.pos = 0;
+            this.limit = rawLength;
+        }
+    }
+}
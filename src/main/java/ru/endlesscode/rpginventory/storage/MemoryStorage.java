@@ -0,0 +1,79 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps records in memory only, everything is lost on restart.
+ * Useful for tests and benchmarks.
+ */
+public class MemoryStorage implements Storage {
+    private final Map<UUID, byte[]> records = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean contains(@NotNull UUID id) {
+        return this.records.containsKey(id);
+    }
+
+    @Nullable
+    @Override
+    public byte[] load(@NotNull UUID id) {
+        byte[] data = this.records.get(id);
+        return data == null ? null : data.clone();
+    }
+
+    @Override
+    public void save(@NotNull UUID id, @NotNull byte[] data) {
+        this.records.put(id, data.clone());
+    }
+
+    @Override
+    public void saveAll(@NotNull Map<UUID, byte[]> records) {
+        for (Map.Entry<UUID, byte[]> record : records.entrySet()) {
+            this.save(record.getKey(), record.getValue());
+        }
+    }
+
+    @Override
+    public void delete(@NotNull UUID id) {
+        this.records.remove(id);
+    }
+
+    @NotNull
+    @Override
+    public List<UUID> list() {
+        return new ArrayList<>(this.records.keySet());
+    }
+
+    @Override
+    public void maintain() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
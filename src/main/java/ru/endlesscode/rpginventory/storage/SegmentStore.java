@@ -0,0 +1,652 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Key-value store of records in a few append-only segment files.
+ * <p>
+ * Every record is written to the end of active segment as UUID, length, CRC32 and data.
+ * Removed records are marked with tombstone (record with length -1). Memory-mapped index
+ * is an open-addressing hash table from UUID to segment, offset and length of the last
+ * record, so lookup doesn't depend on number of records. If the store wasn't closed
+ * properly, index is rebuilt from segments.
+ * <p>
+ * Segments with a lot of superseded records are compacted: live records are copied
+ * to active segment and the old segment is deleted.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class SegmentStore implements Closeable {
+    private static final String INDEX_FILE = "index";
+    private static final String SEGMENT_EXTENSION = ".seg";
+    private static final long MAX_SEGMENT_SIZE = 16L << 20;
+
+    private static final int INDEX_MAGIC = 0x52504958; // "RPIX"
+    private static final int INDEX_VERSION = 1;
+    private static final int INDEX_HEADER_SIZE = 32;
+    private static final int ENTRY_SIZE = 32;
+    private static final int MIN_CAPACITY = 1024;
+
+    // Values of segment field in index entry, real segments start from 1
+    private static final int EMPTY = 0;
+    private static final int REMOVED = -1;
+
+    private static final int RECORD_HEADER_SIZE = 24;
+    private static final int TOMBSTONE = -1;
+
+    private final File folder;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final FileChannel indexChannel;
+    private final Object compactionLock = new Object();
+
+    private MappedByteBuffer index;
+    private int capacity;
+    private int size = 0;
+    private int used = 0;
+    private Segment active;
+    private boolean closed = false;
+
+    public SegmentStore(@NotNull File folder) throws IOException {
+        this.folder = folder;
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Failed to create directory: " + folder.getName());
+        }
+
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (!name.endsWith(SEGMENT_EXTENSION)) {
+                    continue;
+                }
+
+                try {
+                    int id = Integer.parseInt(name.substring(0, name.length() - SEGMENT_EXTENSION.length()));
+                    this.segments.put(id, new Segment(id, file));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+
+        this.indexChannel = new RandomAccessFile(new File(folder, INDEX_FILE), "rw").getChannel();
+        if (!this.openIndex()) {
+            this.rebuildIndex();
+        }
+
+        this.setClean(false);
+
+        Map.Entry<Integer, Segment> last = this.segments.lastEntry();
+        if (last == null || last.getValue().size >= MAX_SEGMENT_SIZE) {
+            this.active = this.createSegment();
+        } else {
+            this.active = last.getValue();
+        }
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = msb ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static int entryPosition(int slot) {
+        return INDEX_HEADER_SIZE + slot * ENTRY_SIZE;
+    }
+
+    private static void readFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of segment");
+            }
+        }
+
+        buffer.flip();
+    }
+
+    private static int crc(@NotNull byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Returns data of the last record with given id or null if there are no record
+     */
+    @Nullable
+    public synchronized byte[] get(@NotNull UUID id) throws IOException {
+        this.checkOpen();
+        int slot = this.find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (slot < 0) {
+            return null;
+        }
+
+        int position = entryPosition(slot);
+        Segment segment = this.segments.get(this.index.getInt(position + 16));
+        int length = this.index.getInt(position + 20);
+        long offset = this.index.getLong(position + 24);
+
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        readFully(segment.channel, buffer, offset);
+        byte[] data = new byte[length];
+        buffer.position(RECORD_HEADER_SIZE);
+        buffer.get(data);
+        if (buffer.getInt(20) != crc(data)) {
+            throw new IOException("Record " + id + " is corrupted");
+        }
+
+        return data;
+    }
+
+    public synchronized boolean contains(@NotNull UUID id) throws IOException {
+        this.checkOpen();
+        return this.find(id.getMostSignificantBits(), id.getLeastSignificantBits()) >= 0;
+    }
+
+    /**
+     * Writes record and syncs it to disk
+     */
+    public synchronized void put(@NotNull UUID id, @NotNull byte[] data) throws IOException {
+        this.checkOpen();
+        this.append(id, data);
+        this.active.channel.force(false);
+    }
+
+    /**
+     * Writes all records and syncs them to disk once
+     */
+    public synchronized void putAll(@NotNull Map<UUID, byte[]> records) throws IOException {
+        this.checkOpen();
+        for (Map.Entry<UUID, byte[]> record : records.entrySet()) {
+            this.append(record.getKey(), record.getValue());
+        }
+
+        this.sync();
+    }
+
+    public synchronized void remove(@NotNull UUID id) throws IOException {
+        this.checkOpen();
+        int slot = this.find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (slot < 0) {
+            return;
+        }
+
+        this.writeRecord(this.allocate(RECORD_HEADER_SIZE), id.getMostSignificantBits(), id.getLeastSignificantBits(), null);
+        this.removeEntry(slot);
+    }
+
+    @NotNull
+    public synchronized List<UUID> keys() throws IOException {
+        this.checkOpen();
+        List<UUID> keys = new ArrayList<>(this.size);
+        for (int slot = 0; slot < this.capacity; slot++) {
+            int position = entryPosition(slot);
+            if (this.index.getInt(position + 16) > 0) {
+                keys.add(new UUID(this.index.getLong(position), this.index.getLong(position + 8)));
+            }
+        }
+
+        return keys;
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    public synchronized void sync() throws IOException {
+        this.checkOpen();
+        for (Segment segment : this.segments.values()) {
+            segment.channel.force(false);
+        }
+    }
+
+    /**
+     * Rewrites live records of segments where most of space is taken by superseded or
+     * removed records. Records are copied one by one, so reads from other threads are
+     * not blocked for the whole compaction. Writes are queued to the same save thread
+     * that runs compaction, so they wait until compaction ends.
+     *
+     * @return Number of reclaimed bytes
+     */
+    public long compact() throws IOException {
+        synchronized (this.compactionLock) {
+            return this.compactSegments();
+        }
+    }
+
+    private long compactSegments() throws IOException {
+        List<Segment> candidates = new ArrayList<>();
+        synchronized (this) {
+            this.checkOpen();
+            for (Segment segment : this.segments.values()) {
+                if (segment != this.active && segment.liveBytes * 2 < segment.size) {
+                    candidates.add(segment);
+                }
+            }
+        }
+
+        long reclaimed = 0;
+        for (Segment segment : candidates) {
+            long position = 0;
+            long copied = 0;
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            while (position < segment.size) {
+                header.clear();
+                readFully(segment.channel, header, position);
+                long msb = header.getLong(0);
+                long lsb = header.getLong(8);
+                int length = header.getInt(16);
+
+                synchronized (this) {
+                    this.checkOpen();
+                    int slot = this.find(msb, lsb);
+                    if (length == TOMBSTONE) {
+                        // Tombstone is needed only while older segments may have removed record
+                        if (slot < 0 && segment != this.segments.firstEntry().getValue()) {
+                            this.writeRecord(this.allocate(RECORD_HEADER_SIZE), msb, lsb, null);
+                        }
+                    } else if (slot >= 0 && this.isEntryAt(slot, segment, position)) {
+                        ByteBuffer buffer = ByteBuffer.allocate(length);
+                        readFully(segment.channel, buffer, position + RECORD_HEADER_SIZE);
+                        Segment target = this.allocate(RECORD_HEADER_SIZE + length);
+                        long offset = this.writeRecord(target, msb, lsb, buffer.array());
+                        this.putEntry(msb, lsb, target, offset, length);
+                        copied += RECORD_HEADER_SIZE + length;
+                    }
+                }
+
+                position += RECORD_HEADER_SIZE + Math.max(length, 0);
+            }
+
+            synchronized (this) {
+                this.checkOpen();
+                this.active.channel.force(false);
+                this.segments.remove(segment.id);
+                segment.channel.close();
+                if (!segment.file.delete()) {
+                    throw new IOException("Failed to delete segment: " + segment.file.getName());
+                }
+
+                reclaimed += segment.size - copied;
+            }
+        }
+
+        return reclaimed;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+
+        for (Segment segment : this.segments.values()) {
+            segment.channel.force(false);
+            segment.channel.close();
+        }
+
+        this.setClean(true);
+        this.indexChannel.close();
+        this.closed = true;
+    }
+
+    private void checkOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Store is closed");
+        }
+    }
+
+    private boolean isEntryAt(int slot, @NotNull Segment segment, long offset) {
+        int position = entryPosition(slot);
+        return this.index.getInt(position + 16) == segment.id && this.index.getLong(position + 24) == offset;
+    }
+
+    private void append(@NotNull UUID id, @NotNull byte[] data) throws IOException {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        // Zero header is treated as the end of segment on rebuild
+        if (msb == 0 && lsb == 0) {
+            throw new IllegalArgumentException("Record id can't be zero UUID");
+        }
+
+        Segment segment = this.allocate(RECORD_HEADER_SIZE + data.length);
+        long offset = this.writeRecord(segment, msb, lsb, data);
+        this.putEntry(msb, lsb, segment, offset, data.length);
+    }
+
+    /**
+     * Returns segment where record of given length should be written
+     */
+    @NotNull
+    private Segment allocate(int length) throws IOException {
+        if (this.active.size > 0 && this.active.size + length > MAX_SEGMENT_SIZE) {
+            this.active = this.createSegment();
+        }
+
+        return this.active;
+    }
+
+    /**
+     * Writes record to the end of segment. If writing fails, partially written record
+     * is truncated, so the segment stays readable.
+     *
+     * @return Offset of the record
+     */
+    private long writeRecord(@NotNull Segment segment, long msb, long lsb, @Nullable byte[] data) throws IOException {
+        int length = data == null ? 0 : data.length;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        buffer.putLong(msb);
+        buffer.putLong(lsb);
+        buffer.putInt(data == null ? TOMBSTONE : length);
+        buffer.putInt(data == null ? 0 : crc(data));
+        if (data != null) {
+            buffer.put(data);
+        }
+
+        buffer.flip();
+        long offset = segment.size;
+        long position = offset;
+        try {
+            while (buffer.hasRemaining()) {
+                position += segment.channel.write(buffer, position);
+            }
+        } catch (IOException e) {
+            try {
+                segment.channel.truncate(offset);
+            } catch (IOException ignored) {
+            }
+
+            throw e;
+        }
+
+        segment.size = position;
+        return offset;
+    }
+
+    @NotNull
+    private Segment createSegment() throws IOException {
+        int id = this.segments.isEmpty() ? 1 : this.segments.lastKey() + 1;
+        Segment segment = new Segment(id, new File(this.folder, id + SEGMENT_EXTENSION));
+        this.segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * Returns slot of live entry with given key or -1
+     */
+    private int find(long msb, long lsb) {
+        int mask = this.capacity - 1;
+        int slot = hash(msb, lsb) & mask;
+        for (int i = 0; i < this.capacity; i++, slot = (slot + 1) & mask) {
+            int position = entryPosition(slot);
+            int segment = this.index.getInt(position + 16);
+            if (segment == EMPTY) {
+                return -1;
+            }
+
+            if (this.index.getLong(position) == msb && this.index.getLong(position + 8) == lsb) {
+                return segment == REMOVED ? -1 : slot;
+            }
+        }
+
+        return -1;
+    }
+
+    private void putEntry(long msb, long lsb, @NotNull Segment segment, long offset, int length) throws IOException {
+        if (this.used + 1 > this.capacity / 4 * 3) {
+            this.resizeIndex();
+        }
+
+        int mask = this.capacity - 1;
+        int slot = hash(msb, lsb) & mask;
+        int target = -1;
+        for (int i = 0; i < this.capacity; i++, slot = (slot + 1) & mask) {
+            int position = entryPosition(slot);
+            int oldSegment = this.index.getInt(position + 16);
+            if (oldSegment == EMPTY) {
+                if (target == -1) {
+                    target = slot;
+                    this.used++;
+                }
+                this.size++;
+                break;
+            }
+
+            if (this.index.getLong(position) == msb && this.index.getLong(position + 8) == lsb) {
+                if (oldSegment == REMOVED) {
+                    this.size++;
+                } else {
+                    this.segments.get(oldSegment).liveBytes -= RECORD_HEADER_SIZE + this.index.getInt(position + 20);
+                }
+
+                target = slot;
+                break;
+            }
+
+            if (oldSegment == REMOVED && target == -1) {
+                target = slot;
+            }
+        }
+
+        int position = entryPosition(target);
+        this.index.putLong(position, msb);
+        this.index.putLong(position + 8, lsb);
+        this.index.putInt(position + 16, segment.id);
+        this.index.putInt(position + 20, length);
+        this.index.putLong(position + 24, offset);
+        segment.liveBytes += RECORD_HEADER_SIZE + length;
+    }
+
+    private void removeEntry(int slot) {
+        int position = entryPosition(slot);
+        this.segments.get(this.index.getInt(position + 16)).liveBytes -= RECORD_HEADER_SIZE + this.index.getInt(position + 20);
+        this.index.putInt(position + 16, REMOVED);
+        this.size--;
+    }
+
+    /**
+     * Rehashes index dropping removed entries. Index file grows if needed, but never shrinks.
+     */
+    private void resizeIndex() throws IOException {
+        int newCapacity = Math.max(this.capacity, MIN_CAPACITY);
+        while (this.size + 1 > newCapacity / 2) {
+            newCapacity <<= 1;
+        }
+
+        int count = 0;
+        long[] keys = new long[this.size * 2];
+        int[] lengths = new int[this.size];
+        long[] offsets = new long[this.size];
+        Segment[] entrySegments = new Segment[this.size];
+        for (int slot = 0; slot < this.capacity; slot++) {
+            int position = entryPosition(slot);
+            int segment = this.index.getInt(position + 16);
+            if (segment > 0) {
+                keys[count * 2] = this.index.getLong(position);
+                keys[count * 2 + 1] = this.index.getLong(position + 8);
+                entrySegments[count] = this.segments.get(segment);
+                lengths[count] = this.index.getInt(position + 20);
+                offsets[count] = this.index.getLong(position + 24);
+                count++;
+            }
+        }
+
+        this.mapIndex(newCapacity);
+        this.clearIndex();
+        for (int i = 0; i < count; i++) {
+            entrySegments[i].liveBytes -= RECORD_HEADER_SIZE + lengths[i];
+            this.putEntry(keys[i * 2], keys[i * 2 + 1], entrySegments[i], offsets[i], lengths[i]);
+        }
+    }
+
+    private void mapIndex(int capacity) throws IOException {
+        this.capacity = capacity;
+        this.index = this.indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER_SIZE + (long) capacity * ENTRY_SIZE);
+        this.index.putInt(0, INDEX_MAGIC);
+        this.index.putInt(4, INDEX_VERSION);
+        this.index.putInt(8, capacity);
+    }
+
+    private void clearIndex() {
+        for (int slot = 0; slot < this.capacity; slot++) {
+            this.index.putInt(entryPosition(slot) + 16, EMPTY);
+        }
+
+        this.size = 0;
+        this.used = 0;
+    }
+
+    private void setClean(boolean clean) {
+        this.index.putInt(12, clean ? 1 : 0);
+        this.index.force();
+    }
+
+    /**
+     * Opens existing index if it was closed properly
+     *
+     * @return false if index should be rebuilt
+     */
+    private boolean openIndex() throws IOException {
+        long fileSize = this.indexChannel.size();
+        if (fileSize < INDEX_HEADER_SIZE) {
+            return false;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+        readFully(this.indexChannel, header, 0);
+        int capacity = header.getInt(8);
+        if (header.getInt(0) != INDEX_MAGIC || header.getInt(4) != INDEX_VERSION || header.getInt(12) != 1
+                || capacity < MIN_CAPACITY || Integer.bitCount(capacity) != 1
+                || fileSize < INDEX_HEADER_SIZE + (long) capacity * ENTRY_SIZE) {
+            return false;
+        }
+
+        this.mapIndex(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = entryPosition(slot);
+            int segmentId = this.index.getInt(position + 16);
+            if (segmentId == EMPTY) {
+                continue;
+            }
+
+            this.used++;
+            if (segmentId == REMOVED) {
+                continue;
+            }
+
+            Segment segment = this.segments.get(segmentId);
+            if (segment == null) {
+                return false;
+            }
+
+            segment.liveBytes += RECORD_HEADER_SIZE + this.index.getInt(position + 20);
+            this.size++;
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads all segments from the oldest to the newest. Incomplete record at the end
+     * of segment (if the server crashed while writing) is truncated.
+     */
+    private void rebuildIndex() throws IOException {
+        this.mapIndex(Math.max(MIN_CAPACITY, this.capacity));
+        this.clearIndex();
+        for (Segment segment : this.segments.values()) {
+            segment.liveBytes = 0;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        for (Segment segment : this.segments.values()) {
+            long position = 0;
+            while (position + RECORD_HEADER_SIZE <= segment.size) {
+                header.clear();
+                readFully(segment.channel, header, position);
+                long msb = header.getLong(0);
+                long lsb = header.getLong(8);
+                int length = header.getInt(16);
+
+                // Zeroed tail of the file, CRC of empty data is also zero
+                if (msb == 0 && lsb == 0) {
+                    break;
+                }
+
+                if (length == TOMBSTONE) {
+                    int slot = this.find(msb, lsb);
+                    if (slot >= 0) {
+                        this.removeEntry(slot);
+                    }
+
+                    position += RECORD_HEADER_SIZE;
+                    continue;
+                }
+
+                if (length < 0 || position + RECORD_HEADER_SIZE + length > segment.size) {
+                    break;
+                }
+
+                ByteBuffer data = ByteBuffer.allocate(length);
+                readFully(segment.channel, data, position + RECORD_HEADER_SIZE);
+                if (crc(data.array()) != header.getInt(20)) {
+                    break;
+                }
+
+                this.putEntry(msb, lsb, segment, position, length);
+                position += RECORD_HEADER_SIZE + length;
+            }
+
+            if (position < segment.size) {
+                segment.channel.truncate(position);
+                segment.size = position;
+            }
+        }
+    }
+
+    private static class Segment {
+        private final int id;
+        private final File file;
+        private final FileChannel channel;
+
+        private long size;
+        private long liveBytes = 0;
+
+        Segment(int id, @NotNull File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = new RandomAccessFile(file, "rw").getChannel();
+            this.size = this.channel.size();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.endlesscode.rpginventory.RPGInventory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stores records in a few segment files, see {@link SegmentStore}
+ */
+public class SegmentedStorage implements Storage {
+    private final SegmentStore store;
+
+    public SegmentedStorage(@NotNull File folder) throws IOException {
+        this.store = new SegmentStore(folder);
+    }
+
+    @Override
+    public boolean contains(@NotNull UUID id) throws IOException {
+        return this.store.contains(id);
+    }
+
+    @Nullable
+    @Override
+    public byte[] load(@NotNull UUID id) throws IOException {
+        return this.store.get(id);
+    }
+
+    @Override
+    public void save(@NotNull UUID id, @NotNull byte[] data) throws IOException {
+        this.store.put(id, data);
+    }
+
+    @Override
+    public void saveAll(@NotNull Map<UUID, byte[]> records) throws IOException {
+        this.store.putAll(records);
+    }
+
+    @Override
+    public void delete(@NotNull UUID id) throws IOException {
+        this.store.remove(id);
+    }
+
+    @NotNull
+    @Override
+    public List<UUID> list() throws IOException {
+        return this.store.keys();
+    }
+
+    @Override
+    public void maintain() throws IOException {
+        long reclaimed = this.store.compact();
+        if (reclaimed > 0) {
+            RPGInventory.getPluginLogger().info("Segments compacted, " + reclaimed / 1024 + " KB reclaimed");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.store.close();
+    }
+}
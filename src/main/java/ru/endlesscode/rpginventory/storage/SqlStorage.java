@@ -0,0 +1,161 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stores records in a table of embedded SQLite database.
+ * SQLite driver is shipped with the server, so no additional libraries needed.
+ */
+public class SqlStorage implements Storage {
+    private static final String DRIVER = "org.sqlite.JDBC";
+
+    private final Connection connection;
+    private final String table;
+
+    public SqlStorage(@NotNull File file, @NotNull String table) throws IOException {
+        this.table = table;
+
+        try {
+            Class.forName(DRIVER);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("SQLite driver not found", e);
+        }
+
+        try {
+            this.connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+            try (Statement statement = this.connection.createStatement()) {
+                // Every table uses own connection, so they should wait for each other
+                statement.execute("PRAGMA busy_timeout = 10000");
+                statement.execute("PRAGMA journal_mode = WAL");
+                statement.execute("PRAGMA synchronous = NORMAL");
+                statement.execute("CREATE TABLE IF NOT EXISTS " + table + " (id CHAR(36) PRIMARY KEY, data BLOB NOT NULL)");
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public synchronized boolean contains(@NotNull UUID id) throws IOException {
+        try (PreparedStatement statement = this.connection.prepareStatement("SELECT 1 FROM " + this.table + " WHERE id = ?")) {
+            statement.setString(1, id.toString());
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next();
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Nullable
+    @Override
+    public synchronized byte[] load(@NotNull UUID id) throws IOException {
+        try (PreparedStatement statement = this.connection.prepareStatement("SELECT data FROM " + this.table + " WHERE id = ?")) {
+            statement.setString(1, id.toString());
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() ? result.getBytes(1) : null;
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void save(@NotNull UUID id, @NotNull byte[] data) throws IOException {
+        this.saveAll(Collections.singletonMap(id, data));
+    }
+
+    @Override
+    public synchronized void saveAll(@NotNull Map<UUID, byte[]> records) throws IOException {
+        try {
+            this.connection.setAutoCommit(false);
+            try (PreparedStatement statement = this.connection.prepareStatement("REPLACE INTO " + this.table + " (id, data) VALUES (?, ?)")) {
+                for (Map.Entry<UUID, byte[]> record : records.entrySet()) {
+                    statement.setString(1, record.getKey().toString());
+                    statement.setBytes(2, record.getValue());
+                    statement.addBatch();
+                }
+
+                statement.executeBatch();
+                this.connection.commit();
+            } catch (SQLException e) {
+                this.connection.rollback();
+                throw e;
+            } finally {
+                this.connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void delete(@NotNull UUID id) throws IOException {
+        try (PreparedStatement statement = this.connection.prepareStatement("DELETE FROM " + this.table + " WHERE id = ?")) {
+            statement.setString(1, id.toString());
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @NotNull
+    @Override
+    public synchronized List<UUID> list() throws IOException {
+        List<UUID> ids = new ArrayList<>();
+        try (Statement statement = this.connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT id FROM " + this.table)) {
+            while (result.next()) {
+                try {
+                    ids.add(UUID.fromString(result.getString(1)));
+                } catch (IllegalArgumentException ignored) {
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+
+        return ids;
+    }
+
+    @Override
+    public void maintain() {
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            this.connection.close();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Storage of serialized player inventories or backpacks by UUID.
+ * <p>
+ * Implementations must be thread-safe: records are read in async tasks and in the main thread,
+ * written in the save thread. {@link #maintain()} is called from the save thread too.
+ */
+public interface Storage {
+    boolean contains(@NotNull UUID id) throws IOException;
+
+    @Nullable
+    byte[] load(@NotNull UUID id) throws IOException;
+
+    void save(@NotNull UUID id, @NotNull byte[] data) throws IOException;
+
+    /**
+     * Saves all records at once. Storages that support transactions commit it only once.
+     */
+    void saveAll(@NotNull Map<UUID, byte[]> records) throws IOException;
+
+    void delete(@NotNull UUID id) throws IOException;
+
+    @NotNull
+    List<UUID> list() throws IOException;
+
+    /**
+     * Background upkeep of storage (import of old files, compaction, etc.)
+     */
+    void maintain() throws IOException;
+
+    void close() throws IOException;
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.storage;
+
+import org.jetbrains.annotations.NotNull;
+import ru.endlesscode.rpginventory.RPGInventory;
+import ru.endlesscode.rpginventory.misc.Config;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Types of storage that can be selected in config
+ */
+public enum StorageType {
+    FILES {
+        @NotNull
+        @Override
+        Storage create(@NotNull File dataFolder, @NotNull String name, @NotNull String extension) {
+            return new FileStorage(new File(dataFolder, name), extension);
+        }
+    },
+
+    SEGMENTS {
+        @NotNull
+        @Override
+        Storage create(@NotNull File dataFolder, @NotNull String name, @NotNull String extension) throws IOException {
+            File folder = new File(dataFolder, name);
+            return new ImportingStorage(name, new SegmentedStorage(new File(folder, "segments")), new FileStorage(folder, extension));
+        }
+    },
+
+    SQLITE {
+        @NotNull
+        @Override
+        Storage create(@NotNull File dataFolder, @NotNull String name, @NotNull String extension) throws IOException {
+            return new ImportingStorage(name, new SqlStorage(new File(dataFolder, "storage.db"), name),
+                    new FileStorage(new File(dataFolder, name), extension));
+        }
+    },
+
+    MEMORY {
+        @NotNull
+        @Override
+        Storage create(@NotNull File dataFolder, @NotNull String name, @NotNull String extension) {
+            return new MemoryStorage();
+        }
+    };
+
+    /**
+     * Opens storage selected in config
+     *
+     * @param name      Name of storage, used as name of folder or table and as key in config
+     * @param extension Extension of files for FILES storage
+     */
+    @NotNull
+    public static Storage open(@NotNull String name, @NotNull String extension) throws IOException {
+        String typeName = Config.getConfig().getString("storage." + name, FILES.name());
+        StorageType type;
+        try {
+            type = StorageType.valueOf(typeName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            RPGInventory.getPluginLogger().warning("Unknown storage type: " + typeName + ", FILES will be used");
+            type = FILES;
+        }
+
+        if (type == MEMORY) {
+            RPGInventory.getPluginLogger().warning("MEMORY storage is used for " + name + ", all data will be lost on restart!");
+        }
+
+        return type.create(RPGInventory.getInstance().getDataFolder(), name, extension);
+    }
+
+    @NotNull
+    abstract Storage create(@NotNull File dataFolder, @NotNull String name, @NotNull String extension) throws IOException;
+}
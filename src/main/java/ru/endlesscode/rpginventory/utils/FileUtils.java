@@ -25,6 +25,9 @@ import org.json.simple.parser.ParseException;
 import ru.endlesscode.rpginventory.RPGInventory;
 
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Map;
 import java.util.UUID;
 
@@ -64,4 +67,23 @@ public class FileUtils {
     public static String stripExtension(String fileName) {
         return fileName.substring(0, fileName.lastIndexOf('.'));
     }
-}
+
+    /**
+     * Returns temporary file placed near to given file
+     */
+    @NotNull
+    public static File getTempFile(@NotNull File file) {
+        return new File(file.getParentFile(), file.getName() + ".tmp");
+    }
+
+    /**
+     * Replaces target file with source file in one step (if file system supports it)
+     */
+    public static void replaceFile(@NotNull File source, @NotNull File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
\ No newline at end of file
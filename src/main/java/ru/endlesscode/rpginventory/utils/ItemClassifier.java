@@ -0,0 +1,239 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.utils;
+
+import com.comphenix.protocol.wrappers.nbt.NbtCompound;
+import com.comphenix.protocol.wrappers.nbt.NbtFactory;
+import com.google.common.collect.MapMaker;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.endlesscode.rpginventory.inventory.backpack.BackpackManager;
+import ru.endlesscode.rpginventory.inventory.backpack.BackpackType;
+import ru.endlesscode.rpginventory.item.CustomItem;
+import ru.endlesscode.rpginventory.item.ItemManager;
+import ru.endlesscode.rpginventory.pet.PetFood;
+import ru.endlesscode.rpginventory.pet.PetManager;
+import ru.endlesscode.rpginventory.pet.PetType;
+
+import java.util.Map;
+
+/**
+ * Tells what the item is with one read of its tag. Placeholders (holders of slots,
+ * fill and locked slots) are marked with tags too, so they are recognized without comparing of items.
+ * <p>
+ * Descriptors of CraftItemStacks are cached by NMS item stack (weak identity keys), so all
+ * mirrors of the same slot share one descriptor. Cached descriptor is used while item keeps
+ * the same tag compound, changes of tag in place must be followed by {@link #invalidate}.
+ */
+public class ItemClassifier {
+    private static final Map<Object, CacheEntry> CACHE = new MapMaker().weakKeys().makeMap();
+
+    private ItemClassifier() {
+    }
+
+    @NotNull
+    public static Descriptor classify(@Nullable ItemStack item) {
+        if (ItemUtils.isEmpty(item)) {
+            return Descriptor.NONE;
+        }
+
+        if (!ItemTagReader.canRead(item)) {
+            if (!item.hasItemMeta()) {
+                return Descriptor.NONE;
+            }
+
+            ItemStack copy = ItemUtils.toBukkitItemStack(item.clone());
+            return read(NbtFactory.asCompound(NbtFactory.fromItemTag(copy)));
+        }
+
+        Object handle = ItemTagReader.getHandle(item);
+        Object tag = handle == null ? null : ItemTagReader.getHandleTag(handle);
+        if (tag == null) {
+            return Descriptor.NONE;
+        }
+
+        CacheEntry entry = CACHE.get(handle);
+        if (entry != null && entry.tag == tag) {
+            return entry.descriptor;
+        }
+
+        Descriptor descriptor = read(tag);
+        CACHE.put(handle, new CacheEntry(tag, descriptor));
+        return descriptor;
+    }
+
+    /**
+     * Forgets descriptor of item. Should be called after tag of item was changed in place.
+     */
+    public static void invalidate(@NotNull ItemStack item) {
+        if (!ItemTagReader.canRead(item)) {
+            return;
+        }
+
+        Object handle = ItemTagReader.getHandle(item);
+        if (handle != null) {
+            CACHE.remove(handle);
+        }
+    }
+
+    /**
+     * Forgets all descriptors. Should be called when items, pets or backpacks are reloaded.
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    @NotNull
+    private static Descriptor read(@NotNull Object tag) {
+        String id;
+        if ((id = getString(tag, ItemUtils.ITEM_TAG)) != null) {
+            CustomItem customItem = ItemManager.getCustomItem(id);
+            return new Descriptor(Kind.CUSTOM_ITEM, id, null, customItem, null, null, null);
+        } else if ((id = getString(tag, ItemUtils.BACKPACK_TAG)) != null) {
+            BackpackType backpackType = BackpackManager.getBackpackType(id);
+            String uid = getString(tag, ItemUtils.BACKPACK_UID_TAG);
+            return new Descriptor(Kind.BACKPACK, id, uid, null, null, null, backpackType);
+        } else if ((id = getString(tag, ItemUtils.PET_TAG)) != null) {
+            PetType petType = PetManager.getPetType(id);
+            return new Descriptor(Kind.PET, id, null, null, petType, null, null);
+        } else if ((id = getString(tag, ItemUtils.FOOD_TAG)) != null) {
+            PetFood petFood = PetManager.getPetFood(id);
+            return new Descriptor(Kind.FOOD, id, null, null, null, petFood, null);
+        } else if ((id = getString(tag, ItemUtils.MYPET_TAG)) != null) {
+            return new Descriptor(Kind.MYPET, null, id, null, null, null, null);
+        } else if ((id = getString(tag, ItemUtils.HOLDER_TAG)) != null) {
+            return new Descriptor(Kind.HOLDER, id, null, null, null, null, null);
+        } else if (getString(tag, ItemUtils.FILL_TAG) != null) {
+            return new Descriptor(Kind.FILL, null, null, null, null, null, null);
+        } else if ((id = getString(tag, ItemUtils.LOCKED_TAG)) != null) {
+            return new Descriptor(Kind.LOCKED, id, null, null, null, null, null);
+        }
+
+        return Descriptor.NONE;
+    }
+
+    /**
+     * @param tag NMS compound or {@link NbtCompound}
+     * @return Value of the key or null if there are no such key
+     */
+    @Nullable
+    private static String getString(@NotNull Object tag, @NotNull String key) {
+        if (tag instanceof NbtCompound) {
+            NbtCompound nbt = (NbtCompound) tag;
+            return nbt.containsKey(key) ? nbt.getString(key) : null;
+        }
+
+        return ItemTagReader.hasKey(tag, key) ? ItemTagReader.getString(tag, key) : null;
+    }
+
+    public enum Kind {
+        NONE,
+        CUSTOM_ITEM,
+        BACKPACK,
+        PET,
+        FOOD,
+        MYPET,
+        HOLDER,
+        FILL,
+        LOCKED
+    }
+
+    /**
+     * Immutable description of item. Resolved type is null if item has id that isn't loaded.
+     */
+    public static final class Descriptor {
+        private static final Descriptor NONE = new Descriptor(Kind.NONE, null, null, null, null, null, null);
+
+        private final Kind kind;
+        private final String id;
+        private final String uid;
+        private final CustomItem customItem;
+        private final PetType petType;
+        private final PetFood petFood;
+        private final BackpackType backpackType;
+
+        private Descriptor(Kind kind, String id, String uid, CustomItem customItem,
+                           PetType petType, PetFood petFood, BackpackType backpackType) {
+            this.kind = kind;
+            this.id = id;
+            this.uid = uid;
+            this.customItem = customItem;
+            this.petType = petType;
+            this.petFood = petFood;
+            this.backpackType = backpackType;
+        }
+
+        @NotNull
+        public Kind getKind() {
+            return this.kind;
+        }
+
+        public boolean is(@NotNull Kind kind) {
+            return this.kind == kind;
+        }
+
+        /**
+         * Returns id of custom item, backpack, pet or food, name of slot for holder
+         * or line of buyable slot for locked slot ("0" if slot isn't buyable)
+         */
+        @Nullable
+        public String getId() {
+            return this.id;
+        }
+
+        /**
+         * Returns unique id of backpack or MyPet
+         */
+        @Nullable
+        public String getUid() {
+            return this.uid;
+        }
+
+        @Nullable
+        public CustomItem getCustomItem() {
+            return this.customItem;
+        }
+
+        @Nullable
+        public PetType getPetType() {
+            return this.petType;
+        }
+
+        @Nullable
+        public PetFood getPetFood() {
+            return this.petFood;
+        }
+
+        @Nullable
+        public BackpackType getBackpackType() {
+            return this.backpackType;
+        }
+    }
+
+    private static class CacheEntry {
+        private final Object tag;
+        private final Descriptor descriptor;
+
+        private CacheEntry(Object tag, Descriptor descriptor) {
+            this.tag = tag;
+            this.descriptor = descriptor;
+        }
+    }
+}
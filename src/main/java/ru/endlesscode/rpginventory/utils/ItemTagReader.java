@@ -0,0 +1,135 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.utils;
+
+import com.comphenix.protocol.utility.MinecraftReflection;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.endlesscode.rpginventory.RPGInventory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Read-only access to NBT tag of CraftItemStack without copying of item and wrapping of tag.
+ * Tags of other item stacks are stored in item meta, so they can't be read this way.
+ */
+class ItemTagReader {
+    private static final Class<?> CRAFT_ITEM_STACK;
+    private static final MethodHandle GET_HANDLE;
+    private static final MethodHandle GET_TAG;
+    private static final MethodHandle HAS_KEY;
+    private static final MethodHandle GET_STRING;
+
+    static {
+        Class<?> craftItemStack = null;
+        MethodHandle getHandle = null;
+        MethodHandle getTag = null;
+        MethodHandle hasKey = null;
+        MethodHandle getString = null;
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> itemStackClass = MinecraftReflection.getItemStackClass();
+            Class<?> compoundClass = MinecraftReflection.getNBTCompoundClass();
+
+            craftItemStack = MinecraftReflection.getCraftItemStackClass();
+            Field handleField = craftItemStack.getDeclaredField("handle");
+            handleField.setAccessible(true);
+            getHandle = lookup.unreflectGetter(handleField)
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            getTag = lookup.unreflect(itemStackClass.getMethod("getTag"))
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            hasKey = lookup.unreflect(compoundClass.getMethod("hasKey", String.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class, String.class));
+            getString = lookup.unreflect(compoundClass.getMethod("getString", String.class))
+                    .asType(MethodType.methodType(String.class, Object.class, String.class));
+        } catch (Exception e) {
+            RPGInventory.getPluginLogger().warning("Fast reading of item tags is not available: " + e);
+            craftItemStack = null;
+        }
+
+        CRAFT_ITEM_STACK = craftItemStack;
+        GET_HANDLE = getHandle;
+        GET_TAG = getTag;
+        HAS_KEY = hasKey;
+        GET_STRING = getString;
+    }
+
+    private ItemTagReader() {
+    }
+
+    static boolean canRead(@NotNull ItemStack item) {
+        return CRAFT_ITEM_STACK != null && item.getClass() == CRAFT_ITEM_STACK;
+    }
+
+    /**
+     * Returns NMS compound of item or null if item has no tag
+     *
+     * @param item Item that {@link #canRead}
+     */
+    @Nullable
+    static Object getTag(@NotNull ItemStack item) {
+        Object handle = getHandle(item);
+        return handle == null ? null : getHandleTag(handle);
+    }
+
+    /**
+     * Returns NMS item stack of item. Mirrors of the same slot share one handle.
+     *
+     * @param item Item that {@link #canRead}
+     */
+    @Nullable
+    static Object getHandle(@NotNull ItemStack item) {
+        try {
+            return (Object) GET_HANDLE.invokeExact((Object) item);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to read tag of item", e);
+        }
+    }
+
+    @Nullable
+    static Object getHandleTag(@NotNull Object handle) {
+        try {
+            return (Object) GET_TAG.invokeExact(handle);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to read tag of item", e);
+        }
+    }
+
+    static boolean hasKey(@NotNull Object tag, @NotNull String key) {
+        try {
+            return (boolean) HAS_KEY.invokeExact(tag, key);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to read tag of item", e);
+        }
+    }
+
+    @NotNull
+    static String getString(@NotNull Object tag, @NotNull String key) {
+        try {
+            return (String) GET_STRING.invokeExact(tag, key);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to read tag of item", e);
+        }
+    }
+}
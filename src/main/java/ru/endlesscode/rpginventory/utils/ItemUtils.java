@@ -26,7 +26,6 @@ import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import ru.endlesscode.rpginventory.RPGInventory;
-import ru.endlesscode.rpginventory.inventory.backpack.BackpackManager;
 import ru.endlesscode.rpginventory.inventory.backpack.BackpackType;
 import ru.endlesscode.rpginventory.item.CustomItem;
 import ru.endlesscode.rpginventory.item.ItemManager;
@@ -50,6 +49,10 @@ public class ItemUtils {
     public static final String ITEM_TAG = "rpginv.id";
     public static final String FOOD_TAG = "food.id";
     public static final String PET_TAG = "pet.id";
+    public static final String MYPET_TAG = "mypet.uuid";
+    public static final String LOCKED_TAG = "locked";
+    public static final String HOLDER_TAG = "rpginv.holder";
+    public static final String FILL_TAG = "rpginv.fill";
 
     private static final List<Material> itemsWithDurability = Arrays.asList(
             Material.WOOD_AXE, Material.WOOD_PICKAXE, Material.WOOD_HOE, Material.WOOD_SWORD,
@@ -72,6 +75,7 @@ public class ItemUtils {
             }
         }
         NbtFactory.setItemTag(item, nbt);
+        ItemClassifier.invalidate(item);
 
         return item;
     }
@@ -82,6 +86,18 @@ public class ItemUtils {
 
     @SuppressWarnings("WeakerAccess")
     public static String getTag(@NotNull ItemStack item, String tag, String defaultValue) {
+        if (ItemTagReader.canRead(item)) {
+            Object nbt = ItemTagReader.getTag(item);
+            return nbt != null && ItemTagReader.hasKey(nbt, tag) ? ItemTagReader.getString(nbt, tag) : defaultValue;
+        }
+
+        return getTagFromCopy(item, tag, defaultValue);
+    }
+
+    /**
+     * Reads tag with ProtocolLib, works with any item stack
+     */
+    static String getTagFromCopy(@NotNull ItemStack item, String tag, String defaultValue) {
         item = toBukkitItemStack(item);
         NbtCompound nbt = NbtFactory.asCompound(NbtFactory.fromItemTag(item));
 
@@ -93,6 +109,18 @@ public class ItemUtils {
     }
 
     public static boolean hasTag(@NotNull ItemStack originalItem, String tag) {
+        if (ItemTagReader.canRead(originalItem)) {
+            Object nbt = ItemTagReader.getTag(originalItem);
+            return nbt != null && ItemTagReader.hasKey(nbt, tag);
+        }
+
+        return hasTagInCopy(originalItem, tag);
+    }
+
+    /**
+     * Checks tag with ProtocolLib, works with any item stack
+     */
+    static boolean hasTagInCopy(@NotNull ItemStack originalItem, String tag) {
         if (!originalItem.hasItemMeta()) {
             return false;
         }
@@ -183,18 +211,19 @@ public class ItemUtils {
 
         short durability = item.getDurability();
         short textureDurability;
-        if (CustomItem.isCustomItem(item)) {
-            CustomItem custom = ItemManager.getCustomItem(item);
+        ItemClassifier.Descriptor descriptor = ItemClassifier.classify(item);
+        if (descriptor.is(ItemClassifier.Kind.CUSTOM_ITEM)) {
+            CustomItem custom = descriptor.getCustomItem();
 
             if (custom == null) {
                 return new ItemStack(Material.AIR);
             }
 
             textureDurability = custom.getTextureDurability();
-            item = ItemManager.getItem(ItemUtils.getTag(item, ItemUtils.ITEM_TAG));
-        } else if (BackpackManager.isBackpack(item)) {
-            String bpUID = ItemUtils.getTag(item, ItemUtils.BACKPACK_UID_TAG);
-            BackpackType type = BackpackManager.getBackpackType(ItemUtils.getTag(item, ItemUtils.BACKPACK_TAG));
+            item = ItemManager.getItem(descriptor.getId());
+        } else if (descriptor.is(ItemClassifier.Kind.BACKPACK)) {
+            String bpUID = descriptor.getUid();
+            BackpackType type = descriptor.getBackpackType();
 
             if (type == null) {
                 return new ItemStack(Material.AIR);
@@ -205,8 +234,8 @@ public class ItemUtils {
             if (bpUID != null) {
                 ItemUtils.setTag(item, ItemUtils.BACKPACK_UID_TAG, bpUID);
             }
-        } else if (PetType.isPetItem(item)) {
-            PetType petType = PetManager.getPetFromItem(item);
+        } else if (descriptor.is(ItemClassifier.Kind.PET)) {
+            PetType petType = descriptor.getPetType();
             if (petType == null) {
                 return new ItemStack(Material.AIR);
             }
@@ -218,8 +247,8 @@ public class ItemUtils {
             item = petType.getSpawnItem();
             PetManager.setCooldown(item, cooldown);
             PetManager.saveHealth(item, health);
-        } else if (PetFood.isFoodItem(item)) {
-            PetFood food = PetManager.getFoodFromItem(item);
+        } else if (descriptor.is(ItemClassifier.Kind.FOOD)) {
+            PetFood food = descriptor.getPetFood();
             int amount = item.getAmount();
             if (food == null) {
                 return new ItemStack(Material.AIR);
@@ -241,7 +270,7 @@ public class ItemUtils {
         return item == null || item.getType() == Material.AIR;
     }
 
-    private static ItemStack toBukkitItemStack(ItemStack item) {
+    static ItemStack toBukkitItemStack(ItemStack item) {
         return !item.getClass().getName().endsWith("CraftItemStack") ? MinecraftReflection.getBukkitItemStack(item) : item;
     }
 }
@@ -19,8 +19,6 @@
 package ru.endlesscode.rpginventory.utils;
 
 import org.bukkit.Location;
-import org.bukkit.entity.EntityType;
-import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.util.Vector;
 import org.jetbrains.annotations.NotNull;
@@ -36,14 +34,7 @@ import java.util.Random;
  */
 public class LocationUtils {
     public static List<Player> getNearbyPlayers(Location location, double distance) {
-        List<Player> nearbyPlayers = new ArrayList<>();
-        for (LivingEntity entity : location.getWorld().getLivingEntities()) {
-            if (entity.getType() == EntityType.PLAYER && entity.getLocation().distance(location) <= distance) {
-                nearbyPlayers.add((Player) entity);
-            }
-        }
-
-        return nearbyPlayers;
+        return PlayerGrid.getNearbyPlayers(location, distance);
     }
 
     public static Location getLocationNearPlayer(@NotNull Player player, int radius) {
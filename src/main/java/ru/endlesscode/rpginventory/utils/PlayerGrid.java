@@ -0,0 +1,194 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.utils;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
+import ru.endlesscode.rpginventory.RPGInventory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Players of every world bucketed by chunk sections (16x16x16 blocks).
+ * <p>
+ * Index is updated by events when player comes to another section. Players can also be moved
+ * without events (e.g. passengers of vehicles), so all players are reindexed every second.
+ * Should be used only from main thread.
+ */
+public class PlayerGrid {
+    private static final int SECTION_SHIFT = 4;
+    private static final int RESYNC_PERIOD = 20;
+
+    private static final Map<UUID, Map<Long, List<Player>>> WORLDS = new HashMap<>();
+    private static final Map<UUID, Cell> CELLS = new HashMap<>();
+
+    private PlayerGrid() {
+    }
+
+    public static void start(@NotNull RPGInventory plugin) {
+        WORLDS.clear();
+        CELLS.clear();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            PlayerGrid.update(player, player.getLocation());
+        }
+
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                for (Player player : Bukkit.getOnlinePlayers()) {
+                    PlayerGrid.update(player, player.getLocation());
+                }
+            }
+        }.runTaskTimer(plugin, RESYNC_PERIOD, RESYNC_PERIOD);
+    }
+
+    /**
+     * Checks that player has moved to another section, it is cheap check for move events
+     */
+    public static boolean isSectionChanged(@NotNull Location from, @NotNull Location to) {
+        return from.getBlockX() >> SECTION_SHIFT != to.getBlockX() >> SECTION_SHIFT
+                || from.getBlockY() >> SECTION_SHIFT != to.getBlockY() >> SECTION_SHIFT
+                || from.getBlockZ() >> SECTION_SHIFT != to.getBlockZ() >> SECTION_SHIFT
+                || from.getWorld() != to.getWorld();
+    }
+
+    public static void update(@NotNull Player player, @NotNull Location location) {
+        UUID worldId = location.getWorld().getUID();
+        long key = key(location.getBlockX() >> SECTION_SHIFT, location.getBlockY() >> SECTION_SHIFT,
+                location.getBlockZ() >> SECTION_SHIFT);
+
+        Cell cell = CELLS.get(player.getUniqueId());
+        if (cell != null) {
+            if (cell.key == key && cell.worldId.equals(worldId) && cell.player == player) {
+                return;
+            }
+
+            removeFromBucket(cell);
+        }
+
+        cell = new Cell(player, worldId, key);
+        CELLS.put(player.getUniqueId(), cell);
+
+        Map<Long, List<Player>> buckets = WORLDS.get(worldId);
+        if (buckets == null) {
+            buckets = new HashMap<>();
+            WORLDS.put(worldId, buckets);
+        }
+
+        List<Player> bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<>(2);
+            buckets.put(key, bucket);
+        }
+
+        bucket.add(player);
+    }
+
+    public static void remove(@NotNull Player player) {
+        Cell cell = CELLS.remove(player.getUniqueId());
+        if (cell != null) {
+            removeFromBucket(cell);
+        }
+    }
+
+    /**
+     * Returns players in given radius. Only sections that intersect with cube
+     * around the sphere are checked.
+     */
+    @NotNull
+    public static List<Player> getNearbyPlayers(@NotNull Location location, double distance) {
+        List<Player> nearbyPlayers = new ArrayList<>();
+        World world = location.getWorld();
+        Map<Long, List<Player>> buckets = WORLDS.get(world.getUID());
+        if (buckets == null) {
+            return nearbyPlayers;
+        }
+
+        int minX = floor(location.getX() - distance) >> SECTION_SHIFT;
+        int maxX = floor(location.getX() + distance) >> SECTION_SHIFT;
+        int minY = floor(location.getY() - distance) >> SECTION_SHIFT;
+        int maxY = floor(location.getY() + distance) >> SECTION_SHIFT;
+        int minZ = floor(location.getZ() - distance) >> SECTION_SHIFT;
+        int maxZ = floor(location.getZ() + distance) >> SECTION_SHIFT;
+
+        double distanceSquared = distance*distance;
+        Location playerLocation = new Location(null, 0, 0, 0);
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int y = minY; y <= maxY; y++) {
+                    List<Player> bucket = buckets.get(key(x, y, z));
+                    if (bucket == null) {
+                        continue;
+                    }
+
+                    for (Player player : bucket) {
+                        player.getLocation(playerLocation);
+                        if (playerLocation.getWorld() == world && playerLocation.distanceSquared(location) <= distanceSquared) {
+                            nearbyPlayers.add(player);
+                        }
+                    }
+                }
+            }
+        }
+
+        return nearbyPlayers;
+    }
+
+    private static void removeFromBucket(Cell cell) {
+        Map<Long, List<Player>> buckets = WORLDS.get(cell.worldId);
+        List<Player> bucket = buckets == null ? null : buckets.get(cell.key);
+        if (bucket == null) {
+            return;
+        }
+
+        bucket.remove(cell.player);
+        if (bucket.isEmpty()) {
+            buckets.remove(cell.key);
+        }
+    }
+
+    private static long key(int x, int y, int z) {
+        return ((long) x & 0x3FFFFF) << 30 | ((long) z & 0x3FFFFF) << 8 | (y & 0xFF);
+    }
+
+    private static int floor(double value) {
+        int floor = (int) value;
+        return value < floor ? floor - 1 : floor;
+    }
+
+    private static class Cell {
+        private final Player player;
+        private final UUID worldId;
+        private final long key;
+
+        private Cell(Player player, UUID worldId, long key) {
+            this.player = player;
+            this.worldId = worldId;
+            this.key = key;
+        }
+    }
+}
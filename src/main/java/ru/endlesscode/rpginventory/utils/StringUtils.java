@@ -79,7 +79,7 @@ public class StringUtils {
             // Health Updater
             HealthUpdater hu = playerWrapper.getHealthUpdater();
             line = line.replaceAll("%PLUGIN_HP%", hu.getModifiedHealth() + "");
-            line = line.replaceAll("%OTHER_HP%", hu.getOtherPluginsBonus() + hu.getAttributesBonus() + "");
+            line = line.replaceAll("%OTHER_HP%", hu.getOtherBonus() + "");
 
             // Modifiers
             line = line.replaceAll("%DAMAGE%", ItemManager.getModifier(player, ItemStat.StatType.DAMAGE).toString());
@@ -116,7 +116,7 @@ public class StringUtils {
                 case "health":
                     return hu.getModifiedHealth() + "";
                 case "health_other_plugins":
-                    return hu.getOtherPluginsBonus() + hu.getAttributesBonus() + "";
+                    return hu.getOtherBonus() + "";
                 case "damage_bonus":
                     return ItemManager.getModifier(player, ItemStat.StatType.DAMAGE).toString();
                 case "bow_damage_bonus":
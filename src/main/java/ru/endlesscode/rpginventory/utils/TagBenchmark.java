@@ -0,0 +1,103 @@
+/*
+ * This file is part of RPGInventory.
+ * Copyright (C) 2015-2017 Osip Fatkullin
+ *
+ * RPGInventory is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * RPGInventory is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RPGInventory.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.endlesscode.rpginventory.utils;
+
+import com.comphenix.protocol.utility.MinecraftReflection;
+import org.bukkit.Material;
+import org.bukkit.command.CommandSender;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import ru.endlesscode.rpginventory.item.ItemManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares reading of item tags through NMS handles with reading from copy of item.
+ * Runs in the main thread, because it uses real CraftItemStacks.
+ */
+public class TagBenchmark {
+    private static final int WARMUP_CALLS = 100000;
+    private static final int CALLS = 100000;
+
+    // Result of calls, so JIT can't throw them away
+    private static int sink = 0;
+
+    private TagBenchmark() {
+    }
+
+    public static void run(@NotNull CommandSender sender) {
+        List<ItemStack> items = new ArrayList<>();
+        for (String itemId : ItemManager.getItemList()) {
+            items.add(MinecraftReflection.getBukkitItemStack(ItemManager.getItem(itemId)));
+        }
+
+        // Item without tag
+        items.add(MinecraftReflection.getBukkitItemStack(new ItemStack(Material.STONE)));
+
+        ItemStack[] array = items.toArray(new ItemStack[items.size()]);
+        sender.sendMessage(StringUtils.coloredLine("&3Items: &6" + array.length + "&3, calls: &6" + CALLS));
+        for (Method method : Method.values()) {
+            measure(method, array, WARMUP_CALLS);
+            long time = measure(method, array, CALLS);
+            sender.sendMessage(StringUtils.coloredLine(String.format("&6%s&3: &6%.1f &3ns per call", method, (double) time/CALLS)));
+        }
+    }
+
+    private static long measure(@NotNull Method method, @NotNull ItemStack[] items, int calls) {
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            sink += method.call(items[i%items.length]);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private enum Method {
+        GET_TAG_COPY {
+            @Override
+            int call(@NotNull ItemStack item) {
+                return ItemUtils.getTagFromCopy(item, ItemUtils.ITEM_TAG, "").length();
+            }
+        },
+
+        GET_TAG_HANDLE {
+            @Override
+            int call(@NotNull ItemStack item) {
+                return ItemUtils.getTag(item, ItemUtils.ITEM_TAG, "").length();
+            }
+        },
+
+        HAS_TAG_COPY {
+            @Override
+            int call(@NotNull ItemStack item) {
+                return ItemUtils.hasTagInCopy(item, ItemUtils.ITEM_TAG) ? 1 : 0;
+            }
+        },
+
+        HAS_TAG_HANDLE {
+            @Override
+            int call(@NotNull ItemStack item) {
+                return ItemUtils.hasTag(item, ItemUtils.ITEM_TAG) ? 1 : 0;
+            }
+        };
+
+        abstract int call(@NotNull ItemStack item);
+    }
+}